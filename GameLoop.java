@@ -0,0 +1,281 @@
+// All imports needed to run a stage while it is played.
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.Timer;
+
+/** This runs a stage while it is played, where the pressed keys are queued (see InputQueue)
+ *  and the stage moves in fixed steps on its own simulation thread, away from the
+ *  Event Dispatch Thread (so a slow step never holds up the screen or the keys):
+ *  - The simulation thread adds up the time since its previous wake-up, and the stage does
+ *    one step for every STEP_NANOS of added up time. In between, the thread sleeps until the
+ *    next step is due.
+ *  - In each step, the next queued move of the player is done (so a pressed key is applied
+ *    in the next step).
+ *  - In the real-time mode, the monsters move once every monster interval, so they keep moving
+ *    while the player waits. Otherwise, the monsters move together with each move of the player.
+ *  - After the steps, the changes of the stage are published in a snapshot (see
+ *    SnapshotExchange). Every frame (at the refresh rate of the screen), a timer on the
+ *    Event Dispatch Thread draws the stage, where the game stage takes the newest snapshot
+ *    instead of reading the stage engine itself.
+ *  The steps where something happened can be recorded in a replay file (see ReplayRecorder).
+ *  Only the simulation thread uses the stage engine while the loop runs. The thread is started
+ *  after the stage map is generated and stop waits until it has ended, so the stage engine
+ *  is never used by two threads at the same time.
+ *  The time between frames, the time spent in a frame and the time of one step are measured
+ *  separately (as running averages), to tune the delay between a pressed key and the screen.
+ */
+public class GameLoop {
+
+    static final int STEPS_PER_SECOND = 120; // Steps of the stage per second.
+
+    static final long STEP_NANOS = 1_000_000_000L / STEPS_PER_SECOND; // Time of one step.
+
+    private static final int MAX_STEPS_PER_WAKE = 8; // Steps in one wake-up before time is skipped.
+
+    private static final int AVERAGE_SHIFT = 4; // Averages weigh the newest time by 1/16.
+
+    private final StageEngine engine; // The stage which is run.
+
+    private final long monsterNanos; // Time between two moves of the monsters.
+
+    private final InputQueue moves = new InputQueue(); // Queued moves of the pressed keys.
+
+    private final SnapshotExchange snapshots; // Hands the snapshots of the stage to the drawer.
+
+    private final Runnable drawer; // Draws the newest snapshot of the stage in every frame.
+
+    private boolean realTime; // Whether the monsters keep moving while the player waits.
+
+    private ReplayRecorder recorder; // Records the steps of the stage, or null.
+
+    private final Timer frameTimer; // Timer which starts every frame.
+
+    private Thread simulation; // The thread which runs the steps, or null if it isn't started.
+
+    private volatile boolean running; // Whether the simulation thread keeps doing steps.
+
+    private long previousFrame; // Clock time (nanoseconds) of the previous frame.
+
+    private long monsterWait; // Time since the monsters moved the last time.
+
+    private long frameInterval; // Average time between two frames (nanoseconds).
+
+    private long frameTime; // Average time spent drawing one frame (nanoseconds).
+
+    private volatile long stepTime; // Average time of one step (written by the thread only).
+
+    /** Creates a game loop for a stage, which is started with start.
+     *
+     * @param engine The stage which is run.
+     * @param monsterMovesPerSecond How many times per second the monsters move (real-time mode).
+     * @param drawer Draws the newest snapshot of the stage, on the Event Dispatch Thread.
+     */
+    public GameLoop(StageEngine engine, int monsterMovesPerSecond, Runnable drawer) {
+        if (monsterMovesPerSecond < 1 || monsterMovesPerSecond > STEPS_PER_SECOND) {
+            throw new IllegalArgumentException("Monsters can move 1 to " + STEPS_PER_SECOND
+                + " times per second.");
+        }
+        this.engine = engine;
+        this.monsterNanos = 1_000_000_000L / monsterMovesPerSecond;
+        this.snapshots = new SnapshotExchange(engine);
+        this.drawer = drawer;
+        this.frameTimer = new Timer(1000 / 60, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                frame();
+            }
+        });
+    }
+
+    /** Starts the game loop, where any earlier queued moves are forgotten.
+     *  A game loop which is still running is stopped first.
+     *
+     * @param frameRate The number of frames per second.
+     * @param realTime Whether the monsters keep moving while the player waits.
+     */
+    public void start(int frameRate, boolean realTime) {
+        start(frameRate, realTime, null);
+    }
+
+    /** Starts the game loop, where the steps are recorded in a replay file.
+     *  A game loop which is still running is stopped first.
+     *
+     * @param frameRate The number of frames per second.
+     * @param realTime Whether the monsters keep moving while the player waits.
+     * @param recorder Records the steps, or null if they aren't recorded.
+     *     The recorder can be closed once the game loop is stopped (see GameStage.stop).
+     */
+    public void start(int frameRate, boolean realTime, ReplayRecorder recorder) {
+        stop();
+        this.realTime = realTime;
+        this.recorder = recorder;
+        moves.clear();
+        monsterWait = 0;
+        previousFrame = System.nanoTime();
+        frameTimer.setDelay(Math.max(1, 1000 / frameRate));
+        frameTimer.start();
+
+        // The fields above are written before the thread starts, so the thread sees them.
+        running = true;
+        simulation = new Thread(this::simulate, "Escapade " + engine.getDifficulty() + " stage");
+        simulation.setDaemon(true); // The game can exit while a stage is played.
+        simulation.start();
+    }
+
+    /** Stops the game loop, where this waits until the simulation thread has ended
+     *  (unless it is called by the simulation thread itself).
+     */
+    public void stop() {
+        running = false;
+        frameTimer.stop();
+        Thread thread = simulation;
+        if (thread == null || thread == Thread.currentThread()) {
+            return;
+        }
+        LockSupport.unpark(thread); // Wake the thread if it sleeps until the next step.
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true; // Keep waiting, since the thread still uses the stage engine.
+            }
+        }
+        simulation = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        recorder = null; // The simulation thread has ended, so no more steps are recorded.
+    }
+
+    /** Checks if the game loop is running, which stops once the stage is over.
+     *
+     * @return true if the loop is running, false otherwise.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Queues a move of the player, which is done in the next step.
+     *
+     * @param move The move of the player.
+     */
+    public void queueMove(StageEngine.Move move) {
+        moves.offer(move);
+    }
+
+    /** Runs the simulation thread, which does the steps of the time since its previous
+     *  wake-up and then sleeps until the next step is due.
+     *  If the steps take longer than a few steps, the rest of the time is skipped,
+     *  so a slow step doesn't make the next steps even slower.
+     */
+    private void simulate() {
+        long previousWake = System.nanoTime();
+        long unsteppedNanos = 0; // Added up time which hasn't been stepped yet.
+        while (running) {
+            long wake = System.nanoTime();
+            unsteppedNanos += wake - previousWake;
+            previousWake = wake;
+
+            int steps = 0;
+            while (unsteppedNanos >= STEP_NANOS && running) {
+                if (steps == MAX_STEPS_PER_WAKE) {
+                    unsteppedNanos = 0; // The stage fell behind, so the rest of the time is skipped.
+                    break;
+                }
+                long stepStart = System.nanoTime();
+                step();
+                stepTime += (System.nanoTime() - stepStart - stepTime) >> AVERAGE_SHIFT;
+                unsteppedNanos -= STEP_NANOS;
+                steps++;
+            }
+            snapshots.publish(); // Also publishes the changes which couldn't be published before.
+            if (running) {
+                LockSupport.parkNanos(STEP_NANOS - unsteppedNanos);
+            }
+        }
+    }
+
+    /** Draws the newest snapshot of the stage, on the Event Dispatch Thread.
+     */
+    private void frame() {
+        long frameStart = System.nanoTime();
+        frameInterval += (frameStart - previousFrame - frameInterval) >> AVERAGE_SHIFT;
+        previousFrame = frameStart;
+        drawer.run();
+        frameTime += (System.nanoTime() - frameStart - frameTime) >> AVERAGE_SHIFT;
+    }
+
+    /** Does one step, where the next queued move is done and the monsters move if it is
+     *  their turn. The loop stops once the stage is over.
+     */
+    private void step() {
+        StageEngine.Move move = moves.poll();
+        boolean monstersMove;
+        if (realTime) {
+            monsterWait += STEP_NANOS;
+            monstersMove = monsterWait >= monsterNanos;
+            if (monstersMove) {
+                monsterWait -= monsterNanos;
+            }
+        } else {
+            monstersMove = move != null; // The monsters move together with the player.
+        }
+        engine.step(move, monstersMove);
+        if (recorder != null && (move != null || monstersMove)) {
+            recorder.record(engine.getElapsedNanos(), move, monstersMove);
+        }
+        if (engine.isFinished()) {
+            running = false; // The frame timer is stopped by the game stage once the stage is over.
+        }
+    }
+
+    /** Returns the exchange which hands the snapshots of the stage to the drawer.
+     *
+     * @return The snapshot exchange.
+     */
+    public SnapshotExchange getSnapshots() {
+        return snapshots;
+    }
+
+    /** Returns the average time between two frames.
+     *
+     * @return The time in nanoseconds.
+     */
+    public long getFrameInterval() {
+        return frameInterval;
+    }
+
+    /** Returns the average time spent drawing one frame.
+     *
+     * @return The time in nanoseconds.
+     */
+    public long getFrameTime() {
+        return frameTime;
+    }
+
+    /** Returns the average time of one step.
+     *
+     * @return The time in nanoseconds.
+     */
+    public long getStepTime() {
+        return stepTime;
+    }
+
+    /** Returns the number of queued moves which haven't been done yet.
+     *
+     * @return The number of queued moves (the depth of the input queue).
+     */
+    public int getQueuedMoves() {
+        return moves.size();
+    }
+
+    /** Returns the queue of the moves of the pressed keys, for example to read its metrics.
+     *
+     * @return The input queue.
+     */
+    public InputQueue getInputQueue() {
+        return moves;
+    }
+}
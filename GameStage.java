@@ -1,11 +1,14 @@
 // All imports needed to create the game stage.
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.util.Random;
-import java.util.TreeMap;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
 import javax.swing.*;
 
-/** This generates the stage map, which has a different size depending on the chosen difficulty.
+/** This shows the stage map, which has a different size depending on the chosen difficulty.
+ *  The rules of the stage are in the stage engine, where this game stage is a listener 
+ *  which draws the stage map and redirects the player once the stage is over.
  *  The following game elements are in each stage difficulty 
  *  (except monsters are not present in 'Easy' the stage):
  *  - Walls (immobile and they stop the player from moving in a certain direction).
@@ -17,41 +20,82 @@ import javax.swing.*;
  *  - Monsters are red.
  *  Within the stage map, the player is highlighted blue and the goal is highlighted green.
  *  Once the player reaches this goal, the player has completed the stage.
+ *  While the stage is played, the stage engine runs on the simulation thread of the game loop,
+ *  so the game stage only draws the newest snapshot of the stage (see SnapshotExchange),
+ *  and the end of the stage is handled on the Event Dispatch Thread.
  */
-public class GameStage extends JPanel {
-
-    /** Enums to represent game elements in the stage map.
-     */
-    private static enum Tile {
-        EMPTY, WALL, OBSTACLE, MONSTER, GOAL, START
-    }
-
-    /** Enums to represent difficulties.
-     */
-    public static enum Difficulty {
-        EASY, MEDIUM, HARD
-    }
+public class GameStage extends JPanel implements StageEngine.Listener {
 
     private InputMap inputMap; // Inputting keys for player movement.
 
     private ActionMap actionMap; // Creating player movement from inputted keys.
 
-    private Difficulty difficulty; // For the stage difficulty.
+    private StageEngine engine; // The rules of the stage, with the stage map.
 
     private int rowSize; // Number of rows in the stage map.
 
     private int colSize; // Number of columns in the stage map.
 
-    private Tile[][] stageMap; // A 2D array to represent the cells in the stage map.
+    /** Colors of the game elements, indexed by how they are stored in the stage engine,
+     *  so that painting a cell does not create a new color object.
+     */
+    private static final Color[] TILE_COLORS = {
+        Color.WHITE, // Empty cells
+        new Color(84, 61, 43), // Walls
+        Color.YELLOW, // Obstacles
+        Color.RED, // Monsters
+        Color.GREEN, // Goal
+        Color.BLACK // Start cell
+    };
+
+    private static final Color PLAYER_COLOR = Color.BLUE; // Color of the player.
+
+    private static final Color BORDER_COLOR = Color.BLACK; // Color of the cell borders.
+
+    private static final int MIN_BORDERED_CELL = 4; // Smallest cell size (pixels) with a border.
+
+    static final int MONSTER_MOVES_PER_SECOND = 4; // Monster speed in the real-time mode.
+
+    static final String REPLAY_FOLDER = "escapade-replays"; // Folder of the replay files.
+
+    private ReplayRecorder recorder; // Records the stage which is played, or null.
+
+    private boolean recordReplays = true; // Whether replays are recorded (until one fails).
+
+    private BufferedImage mapImage; // Image of the stage map, where only changed cells are redrawn.
+
+    private boolean[] dirty; // Whether a cell (row * colSize + col) changed since the last draw.
+
+    private int[] dirtyCells; // The cells (row * colSize + col) which changed since the last draw.
 
-    private JLabel[][] graphics; // A 2D array to represent the data of stageMap in a JLabel.
+    private int dirtyCount; // Number of cells in dirtyCells.
 
-    private PlayerMovement player; // A player with movement methods.
+    private boolean allDirty; // Whether the whole stage map has to be redrawn.
+
+    private SnapshotExchange snapshots; // Hands the snapshots of the stage to this game stage.
+
+    private StageSnapshot shown; // The snapshot which was last drawn into the image.
+
+    private int shownPlayerRow; // The row of the player in the shown snapshot.
+
+    private int shownPlayerCol; // The column of the player in the shown snapshot.
+
+    private int repaintedCells; // Number of cells which were repainted in the last draw.
 
     private GameWindow gameWindow; // The game window.
 
     private String playerName; // The inputted player name.
 
+    private GameLoop gameLoop; // Runs the stage with the queued moves while it is played.
+
+    /** Returns the stage engine with the rules of this stage.
+     * 
+     * @return The stage engine.
+     */
+    public StageEngine getEngine() {
+        return engine;
+    }
+
     /** Set player name as the inputted player name.
      * 
      * @param playerName Inputted player name.
@@ -60,65 +104,118 @@ public class GameStage extends JPanel {
         this.playerName = playerName;
     }
 
-    /** Create a layout for the stage map.
+    /** Starts a new play of this stage, where a new stage map is generated in the same
+     *  stage engine and the player starts again at the start.
      * 
-     *  @param gameWindow The game window.
-     *  @param difficulty The stage with the corresponding difficulty.
+     * @param playerName Inputted player name.
      */
-    public GameStage(GameWindow gameWindow, Difficulty difficulty) {
-        // Emphasizes the current game window and difficulty.
-        this.gameWindow = gameWindow;
-        this.difficulty = difficulty;
+    public void reset(String playerName) {
+        stop(); // The stage engine is only used by one thread at a time.
+        setPlayerName(playerName);
+        engine.generateMap();
+        publishStopped();
+        draw();
+    }
 
-        /* Create cases for the difficulty where we can switch the difficulty
-         * the according stage map with corresponding game elements and stage map dimensions.
-         */
-        switch (difficulty) {
-            case EASY -> {
-                rowSize = 15;
-                colSize = 15;
-            } 
-            case MEDIUM -> {
-                rowSize = 25;
-                colSize = 25;
-            }
-            case HARD -> {
-                rowSize = 40;
-                colSize = 40;
+    /** Starts the game loop of the stage, which does the moves of the pressed keys.
+     *  The stage is recorded in a replay file (see ReplayRunner to play it again),
+     *  unless replays can't be recorded (see replayFailed).
+     * 
+     * @param frameRate The number of frames per second of the screen.
+     * @param realTime Whether the monsters keep moving while the player waits.
+     */
+    public void start(int frameRate, boolean realTime) {
+        stop(); // The replay of a previous play is closed first.
+        if (recordReplays) {
+            try {
+                recorder = new ReplayRecorder(Path.of(REPLAY_FOLDER), engine, playerName,
+                    realTime);
+            } catch (IOException | RuntimeException e) {
+                replayFailed(e);
             }
-            default -> {
-                // No other cases to cover since there are only 3 stage difficulties.
+        }
+        gameLoop.start(frameRate, realTime, recorder);
+    }
+
+    /** Stops the game loop of the stage (if it is running), so pressed keys do nothing,
+     *  and closes the replay file of the stage.
+     */
+    public void stop() {
+        gameLoop.stop();
+        if (recorder != null) {
+            try {
+                recorder.close(); // The simulation thread has ended, so nothing is recorded.
+            } catch (IOException e) {
+                replayFailed(e);
             }
+            recorder = null;
         }
+        publishStopped(); // The last steps may not have been published yet.
+    }
+
+    /** Reports that a replay can't be recorded, after which no replays are recorded anymore
+     *  in this stage (so the message is only shown once).
+     * 
+     * @param e The reason why the replay can't be recorded.
+     */
+    private void replayFailed(Exception e) {
+        recordReplays = false;
+        gameWindow.reportError("Replays can't be recorded anymore: " + e.getMessage());
+    }
+
+    /** Publishes the last changes of the stage while the game loop is stopped, on the
+     *  Event Dispatch Thread. A snapshot which hasn't been drawn yet is taken first,
+     *  so there is a released snapshot to publish the changes in.
+     */
+    private void publishStopped() {
+        takeSnapshot();
+        snapshots.publish();
+    }
+
+    /** Returns the game loop of this stage, for example to read its frame and step times
+     *  or the number of queued moves.
+     * 
+     * @return The game loop.
+     */
+    public GameLoop getGameLoop() {
+        return gameLoop;
+    }
+
+    /** Create a layout for the stage map.
+     * 
+     *  @param gameWindow The game window.
+     *  @param difficulty The stage with the corresponding difficulty.
+     */
+    public GameStage(GameWindow gameWindow, StageEngine.Difficulty difficulty) {
+        // Emphasizes the current game window and the stage engine with the difficulty.
+        this.gameWindow = gameWindow;
+        this.engine = new StageEngine(difficulty);
+        this.rowSize = engine.getRowSize();
+        this.colSize = engine.getColSize();
+        this.gameLoop = new GameLoop(engine, MONSTER_MOVES_PER_SECOND, this::draw);
 
         // Emphasizes keybinds.
         this.inputMap = this.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
         this.actionMap = this.getActionMap();
 
-        /* Creates the layout for the stage map with dimensions 
-         * corresponding to the stage difficulty.    
+        /* The stage map is painted by this panel itself (see paintComponent),
+         * so no components are added for the cells.
          */
-        this.setLayout(new GridLayout(rowSize, colSize));
-
-        // Initialize the player at the start of the stage map.
-        player = new PlayerMovement(0, 0, this);
-
-        // Initialise an array with corresponding dimensions.
-        this.stageMap = new Tile[rowSize][colSize]; // Initializes the stage map
-        this.graphics = new JLabel[rowSize][colSize];
-        for (int i = 0; i < rowSize; i++) {
-            for (int j = 0; j < colSize; j++) {
-                graphics[i][j] = new JLabel(); // Create a JLabel for each cell in the stage map.
-                graphics[i][j].setBackground(Color.BLACK);
-                graphics[i][j].setOpaque(true);
-                graphics[i][j].setBorder(BorderFactory.createLineBorder(Color.BLACK));
-                add(graphics[i][j]);
-            }
-        }
+        this.setBackground(BORDER_COLOR);
+        this.setOpaque(true);
+
+        // Initialise the changed cells with corresponding dimensions.
+        this.dirty = new boolean[rowSize * colSize];
+        this.dirtyCells = new int[rowSize * colSize];
+
+        // Listen to the stage engine for the end of the stage (the cells come from snapshots).
+        engine.addListener(this);
+        this.snapshots = gameLoop.getSnapshots();
+        this.shown = snapshots.getFront();
+        this.shownPlayerRow = shown.getPlayerRow();
+        this.shownPlayerCol = shown.getPlayerCol();
+        markAllDirty();
 
-        // Generate game elements in the stage map.
-        generateMap();
-        
         // Draw game elements with distinct colors.
         draw();
 
@@ -126,13 +223,13 @@ public class GameStage extends JPanel {
         this.setFocusable(true);
 
         // Keybinds for player movement.
-        register("UP", () -> player.moveUp(),
+        register("UP", () -> move(StageEngine.Move.UP),
                 new KeyStroke[] {KeyStroke.getKeyStroke("W")});
-        register("DOWN", () -> player.moveDown(),
+        register("DOWN", () -> move(StageEngine.Move.DOWN),
             new KeyStroke[] {KeyStroke.getKeyStroke("S")});
-        register("LEFT", () -> player.moveLeft(),
+        register("LEFT", () -> move(StageEngine.Move.LEFT),
             new KeyStroke[] {KeyStroke.getKeyStroke("A")});
-        register("RIGHT", () -> player.moveRight(),
+        register("RIGHT", () -> move(StageEngine.Move.RIGHT),
             new KeyStroke[] {KeyStroke.getKeyStroke("D")});
 
         // Sets the preferred size for the stage map dimension window.
@@ -141,230 +238,236 @@ public class GameStage extends JPanel {
 
     /** Draw the data of how the stage map is generated,
      *  so that this can be seen visually in the game stage.
+     *  The newest snapshot of the stage is drawn, where only the cells which changed since
+     *  the last drawn snapshot are redrawn. This is called on the Event Dispatch Thread
+     *  (in every frame of the game loop while the stage is played).
      */
     public void draw() {
-        for (int i = 0; i < rowSize; i++) {
-            for (int j = 0; j < colSize; j++) {
-                switch (stageMap[i][j]) {
-                    case EMPTY -> {
-                        graphics[i][j].setBackground(Color.WHITE); // Empty cells
-                    }
-                    case MONSTER -> {
-                        graphics[i][j].setBackground(Color.RED); // Monsters
-                    }
-                    case OBSTACLE -> {
-                        graphics[i][j].setBackground(Color.YELLOW); // Obstacles
-                    }
-                    case GOAL -> {
-                        graphics[i][j].setBackground(Color.GREEN); // Goal
-                    }
-                    case START -> {
-                        graphics[i][j].setBackground(Color.BLACK); // Start cell
-                    }
-                    case WALL -> {
-                        graphics[i][j].setBackground(new Color(84, 61, 43)); // Walls
-                    }
-                    default -> {
-                        // Other cases (do nothing since we don't have other game elements).
-                    }
-                }
-            }
-        }
-
-        // Color the player to be blue.
-        graphics[player.getPlayerY()][player.getPlayerX()].setBackground(Color.BLUE);
+        Rectangle changed = drawDirtyCells();
 
         // Update the player when a key is pressed (visually).
-        revalidate();
+        if (changed != null) {
+            repaint(changed);
+        } else if (mapImage == null) {
+            repaint(); // The stage map hasn't been drawn before.
+        }
     }
 
-    /** Generates the map with game elements, where this amount is based on the density
-     *  according to the stage difficulty.
+    /** Returns the number of cells which were repainted in the last draw,
+     *  which is the whole stage map after a new map is generated.
      * 
-     *  We compute the density of the game elements using weights, 
-     *  allowing for easier modifications.
-     *  In general, the density for the game elements are calculated as follows:
-     *  - Scaling (s) is the scale factor based on the stage difficulty, where 0 is for 'Easy',
-     *  '1' is for 'Medium' and '2' is for 'Hard'
-     *  - Wall weight (w) is some positive float,
-     *  - Obstacle weight (o) is some positive float,
-     *  - Monster weight (m) is some positive float,
-     *  - Empty cells weight (c) is the sum of the wall, obstacle and monster weights.
-     *  - Total weights (t) is the sum of the all the weights.
-     *  Then the probability of a certain game element in the stage map is its weight
-     *  divided by the total weights.
+     * @return The number of repainted cells.
+     */
+    public int getRepaintedCells() {
+        return repaintedCells;
+    }
+
+    /** Marks a cell in the stage map as changed, so that it is redrawn on the next draw.
      * 
-     *  The probability of walls in the stage map is:
-     *  (w * (s + 1) / (t + c)).
-     *  The probability of obstacles in the stage map is:
-     *  (o * (s + 1) / (t + c)).
-     *  The probability of monsters in the stage map is:
-     *  (m * s / (t + c)).
-     *  The probability of empty cells in the stage map is 1/2.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
      */
-    public void generateMap() {
-        /* Returns the difficulty based on the enum order for difficulties,
-         * where 'Easy' has scaling 0, 'Medium' has scaling 1, and 'Hard' has scaling 2.
-         */
-        double scaling = (double) difficulty.ordinal();
-        double wallWeight = 0;
-        double obstacleWeight = 0;
-        double monsterWeight = 0;
-
-        // Generate density of game elements based on stage difficulty.
-        switch (difficulty) {
-            case EASY -> {
-                // Density of game elements in the 'Easy' stage map.
-                wallWeight = 0.5 * (scaling + 1.0);
-                obstacleWeight = 0.25 * (scaling + 1.0);
-                monsterWeight = 0.125 * (scaling + 1.0);
-            } 
-            case MEDIUM -> {
-                // Density of game elements in the 'Medium' stage map.
-                wallWeight = 6 * (scaling + 1.0);
-                obstacleWeight = 3 * (scaling + 1.0);
-                monsterWeight = 2 * (scaling); 
-            }
-            case HARD -> {
-                // Density of game elements in the 'Hard' stage map.
-                wallWeight = 12 * (scaling + 1.0);
-                obstacleWeight = 8 * (scaling);
-                monsterWeight = 4 * (scaling);
-            }
-            default -> {
-                // Do nothing, since there are only 3 stage difficulties.
-            }
-        }
-        double emptyWeight = wallWeight + obstacleWeight + monsterWeight; // Density of empty cells.
-
-        // Use a tree map to map the following weights to the corresponding game elements.
-        TreeMap<Double, Tile> treeMap = new TreeMap<>();
-
-        treeMap.put(treeMap.keySet().stream().mapToDouble(i -> i).sum() 
-            + monsterWeight, Tile.MONSTER);
-        treeMap.put(treeMap.keySet().stream().mapToDouble(i -> i).sum() 
-            + obstacleWeight, Tile.OBSTACLE); // 0-5
-        treeMap.put(treeMap.keySet().stream().mapToDouble(i -> i).sum() 
-            + wallWeight, Tile.WALL); // 5-10
-        treeMap.put(treeMap.keySet().stream().mapToDouble(i -> i).sum() 
-            + emptyWeight, Tile.EMPTY); // 10-20
-
-        double maxWeight = treeMap.keySet().stream().mapToDouble(i -> i).max().getAsDouble();
-        Random random = new Random();
-
-        // Generates game elements randomly on the stage map (no guarantee of having a valid path).
-        for (int i = 0; i < rowSize; i++) {
-            for (int j = 0; j < colSize; j++) {
-                double randomWeight = random.nextDouble() * maxWeight;
-                stageMap[i][j] = treeMap.ceilingEntry(randomWeight).getValue();
-            }
+    private void markDirty(int row, int col) {
+        int cell = row * colSize + col;
+        if (!allDirty && !dirty[cell]) {
+            dirty[cell] = true;
+            dirtyCells[dirtyCount++] = cell;
         }
-        /* Generate the player spawn point to be in the top left corner,
-         * and the goal to be in the bottom right corner.
-         */
-        stageMap[0][0] = Tile.START;
-        stageMap[rowSize - 1][colSize - 1] = Tile.GOAL;
     }
 
-    /** Move monsters according to player position and movement
-     *  to create a sense of "unpredictability".
-     *  Determines which tiles are occupied and where none of the game elements
-     *  can overlap a cell on the stage map.
-     *  If the player dies or wins, 
-     *  the player is redirected to the stage selection screen or leaderboards.
+    /** Marks the whole stage map as changed, so that it is redrawn on the next draw.
      */
-    public void tick() {
-        Random random = new Random();
-        
-        // Iterate over each cell in the stage map.
-        for (int i = 0; i < rowSize; i++) {
-            for (int j = 0; j < colSize; j++) {
-                // Continue moving if the corresponding cell isn't a monster.
-                if (stageMap[i][j] != Tile.MONSTER) {
-                    continue;
-                } else {
-                    // Decides a random move direction for the monster to move to an adjacent tile.
-                    int move = random.nextInt(4); 
-                    switch (move) {
-                        case 0 -> {
-                            // If the move is valid and the tile is empty, the monster moves up.
-                            if (0 <= j - 1 && j - 1 < colSize && stageMap[i][j - 1] != Tile.GOAL) {
-                                stageMap[i][j] = Tile.EMPTY;
-                                stageMap[i][j - 1] = Tile.MONSTER;
-                            }
-                        }
-                        case 1 -> {
-                            // If the move is valid and the tile is empty, the monster moves right.
-                            if (0 <= i + 1 && i + 1 < colSize && stageMap[i + 1][j] != Tile.GOAL) {
-                                stageMap[i][j] = Tile.EMPTY;
-                                stageMap[i + 1][j] = Tile.MONSTER;
-                            }
-                        }
-                        case 2 -> {
-                            // If the move is valid and the tile is empty, the monster moves down.
-                            if (0 <= j + 1 && j + 1 < colSize && stageMap[i][j + 1] != Tile.GOAL) {
-                                stageMap[i][j] = Tile.EMPTY;
-                                stageMap[i][j + 1] = Tile.MONSTER;
-                            }
-                        }
-                        case 3 -> {
-                            // If the move is valid and the tile is empty, the monster moves left.
-                            if (0 <= i - 1 && i - 1 < colSize && stageMap[i - 1][j] != Tile.GOAL) {
-                                stageMap[i][j] = Tile.EMPTY;
-                                stageMap[i - 1][j] = Tile.MONSTER;
-                            }
-                        }
-                        default -> {
-                            // The move is invalid, resulting in an illegal game state.
-                            throw new IllegalStateException();
-                        }
-                    }
-                }
+    private void markAllDirty() {
+        allDirty = true;
+    }
+
+    /** Takes the newest published snapshot of the stage, where the cells which changed
+     *  since the last taken snapshot (and the previous and the new cell of the player) are marked.
+     */
+    private void takeSnapshot() {
+        StageSnapshot snapshot = snapshots.take();
+        if (snapshot == null) {
+            return; // The stage hasn't changed since the last taken snapshot.
+        }
+        if (snapshot.isAllChanged()) {
+            markAllDirty();
+        } else {
+            for (int k = 0; k < snapshot.getChangedCount(); k++) {
+                int cell = snapshot.getChanged(k);
+                markDirty(cell / colSize, cell % colSize);
             }
         }
+        if (snapshot.getPlayerRow() != shownPlayerRow || snapshot.getPlayerCol() != shownPlayerCol) {
+            markDirty(shownPlayerRow, shownPlayerCol);
+            markDirty(snapshot.getPlayerRow(), snapshot.getPlayerCol());
+        }
+        shown = snapshot;
+        shownPlayerRow = snapshot.getPlayerRow();
+        shownPlayerCol = snapshot.getPlayerCol();
+    }
 
-        // Marks a tile with the player occupied.
-        Tile occupied = stageMap[player.getPlayerY()][player.getPlayerX()];
-
-        
-        if (occupied == Tile.OBSTACLE || occupied == Tile.MONSTER) {
-            // Player has collided with an obstacle or monster.
-            player.die();
-        } 
-        if (occupied == Tile.GOAL) {
-            // Player has reached the goal and is redirected to the leaderboards.
+    /** Player has reached the goal and is redirected to the leaderboards.
+     *  The score is registered and shown on the Event Dispatch Thread.
+     */
+    @Override
+    public void goalReached() {
+        int finishTime = engine.getFinishTime(); // Measured by the engine, not by the stopwatch.
+        SwingUtilities.invokeLater(() -> {
             gameWindow.stopStageTime();
-            int finishTime = gameWindow.getElapsedTime();
-            gameWindow.registerScore(difficulty, playerName, finishTime);
+            draw(); // Show the last move before the message.
+            gameWindow.registerScore(engine.getDifficulty(), playerName, finishTime);
             JOptionPane.showMessageDialog(this, 
-                "You win! You can see your score in the leaderboards after closing this message."
+                "You win with a time of " + GameWindow.formatTime(finishTime) + "! "
+                + "You can see your score in the leaderboards after closing this message."
             );
             gameWindow.showLeaderboard();
-        }
-        if (player.isDead()) {
-            // Player has died and is redirected to the stage selection screen.
+        });
+    }
+
+    /** Player has died and is redirected to the stage selection screen.
+     *  The message is shown on the Event Dispatch Thread.
+     */
+    @Override
+    public void playerDied() {
+        SwingUtilities.invokeLater(() -> {
             gameWindow.stopStageTime();
+            draw(); // Show the last move before the message.
             JOptionPane.showMessageDialog(this, 
                 "You died. You can choose a stage and try again after closing this message."
             );
             gameWindow.showStageSelectionScreen();
+        });
+    }
+
+    /** Redraws the changed cells into the image of the stage map.
+     * 
+     * @return The area of the panel which changed, or null if nothing was redrawn.
+     */
+    private Rectangle drawDirtyCells() {
+        int width = getWidth();
+        int height = getHeight();
+        if (width <= 0 || height <= 0) {
+            return null; // The stage map isn't visible yet, so it is drawn once it is shown.
         }
-        // Calls draw() to update the movement on the monsters on the JLabel (visually).
-        draw();
+        takeSnapshot();
+
+        // A new image is needed if there is none yet or if the panel has been resized.
+        if (mapImage == null || mapImage.getWidth() != width || mapImage.getHeight() != height) {
+            mapImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            allDirty = true;
+        }
+
+        Graphics g = mapImage.getGraphics();
+        Rectangle changed = null;
+        if (allDirty) {
+            // The panel background is the border color, so the borders are drawn first.
+            g.setColor(BORDER_COLOR);
+            g.fillRect(0, 0, width, height);
+            for (int i = 0; i < rowSize; i++) {
+                for (int j = 0; j < colSize; j++) {
+                    drawCell(g, i, j, width, height);
+                }
+            }
+            repaintedCells = rowSize * colSize;
+            changed = new Rectangle(0, 0, width, height);
+        } else {
+            for (int k = 0; k < dirtyCount; k++) {
+                int i = dirtyCells[k] / colSize;
+                int j = dirtyCells[k] % colSize;
+                Rectangle cell = drawCell(g, i, j, width, height);
+                if (changed == null) {
+                    changed = cell;
+                } else {
+                    changed.add(cell);
+                }
+            }
+            repaintedCells = dirtyCount;
+        }
+        g.dispose();
+
+        // Every cell has been drawn, so nothing is marked as changed anymore.
+        for (int k = 0; k < dirtyCount; k++) {
+            dirty[dirtyCells[k]] = false;
+        }
+        dirtyCount = 0;
+        allDirty = false;
+
+        return changed;
     }
 
-    /** Checks if the player can move to a cell on the stage.
-     *  The player can move if:
-     *  - it is within the boundaries of the stage map.
-     *  - there is no wall that is blocking the player's movement direction.
+    /** Paints the stage map, where the changed cells are redrawn first.
      * 
-     * @param x x-coordinate of the player (which row).
-     * @param y y-coordinate of the player (which column).
-     * @return true if the player can move or if the player is within bounds, false otherwise. 
+     * @param g The graphics used to paint the stage map.
      */
-    public boolean canMoveTo(int x, int y) {
-        boolean isInBounds = (0 <= x && x < rowSize) && (0 <= y && y < colSize);
-        return isInBounds && stageMap[x][y] != Tile.WALL;
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        drawDirtyCells();
+        if (mapImage != null) {
+            g.drawImage(mapImage, 0, 0, null);
+        }
+    }
+
+    /** Draws one cell with the color of its game element, or blue if the player is on it.
+     *  A border is kept around the cell if the cell is large enough to show one.
+     * 
+     * @param g The graphics of the image of the stage map.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param width The width of the stage map in pixels.
+     * @param height The height of the stage map in pixels.
+     * @return The area of the cell in pixels.
+     */
+    private Rectangle drawCell(Graphics g, int row, int col, int width, int height) {
+        int x = cellX(col, width);
+        int y = cellY(row, height);
+        int cellWidth = cellX(col + 1, width) - x;
+        int cellHeight = cellY(row + 1, height) - y;
+
+        if (row == shownPlayerRow && col == shownPlayerCol) {
+            g.setColor(PLAYER_COLOR); // Color the player to be blue.
+        } else {
+            g.setColor(TILE_COLORS[shown.get(row * colSize + col)]);
+        }
+        if (cellWidth >= MIN_BORDERED_CELL && cellHeight >= MIN_BORDERED_CELL) {
+            // The border color is already around the cell, so only the inside is filled.
+            g.fillRect(x + 1, y + 1, cellWidth - 2, cellHeight - 2);
+        } else {
+            g.fillRect(x, y, cellWidth, cellHeight);
+        }
+        return new Rectangle(x, y, cellWidth, cellHeight);
+    }
+
+    /** Returns the pixel x-coordinate where a column of the stage map starts.
+     * 
+     * @param col The column in the stage map.
+     * @param width The width of the stage map in pixels.
+     * @return The x-coordinate in pixels.
+     */
+    private int cellX(int col, int width) {
+        return (int) ((long) col * width / colSize);
+    }
+
+    /** Returns the pixel y-coordinate where a row of the stage map starts.
+     * 
+     * @param row The row in the stage map.
+     * @param height The height of the stage map in pixels.
+     * @return The y-coordinate in pixels.
+     */
+    private int cellY(int row, int height) {
+        return (int) ((long) row * height / rowSize);
+    }
+
+    /** Queues the move of a pressed key, which the game loop does in its next step
+     *  (so holding a key doesn't run the stage for every repeated key event).
+     *  Once the stage is over, the game loop is stopped and pressed keys do nothing.
+     * 
+     * @param move The move of the player.
+     */
+    private void move(StageEngine.Move move) {
+        if (gameLoop.isRunning()) {
+            gameLoop.queueMove(move);
+        }
     }
 
     /** Creates keybinds for the movement methods.
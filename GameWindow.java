@@ -2,11 +2,8 @@
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Path;
 import javax.swing.*;
 
 /** This generates the game window along with the functionality to
@@ -26,20 +23,38 @@ public class GameWindow extends JFrame {
 
     private CardLayout card; // Card layout for the game window
 
-    private Timer stageTime; // Timer object which represents a stopwatch during the stage
+    private Timer stageTime; // Timer which updates the stopwatch every frame during the stage
 
-    private JLabel easyTimeLabel; // Label to display time taken to complete the 'Easy' stage
+    private final StopwatchLabel stopwatch = new StopwatchLabel(); // Shown in the played stage
 
-    private JLabel mediumTimeLabel; // Label to display time taken to complete the 'Easy' stage
+    private JPanel easyTimePanel; // Panel of the 'Easy' stage screen which shows the stopwatch
 
-    private JLabel hardTimeLabel; // Label to display time taken to complete the 'Easy' stage
+    private JPanel mediumTimePanel; // Panel of the 'Medium' stage screen which shows the stopwatch
 
-    private final Map<GameStage.Difficulty, Map<String, List<Integer>>> scores = new HashMap(); 
-    /* Creates a map of maps, where the key is the stage difficulty, 
-     * and the value maps the player name to the corresponding finished stage time.
+    private JPanel hardTimePanel; // Panel of the 'Hard' stage screen which shows the stopwatch
+
+    private GameStage easyStageMap; // The 'Easy' stage, which is reused for every play
+
+    private GameStage mediumStageMap; // The 'Medium' stage, which is reused for every play
+
+    private GameStage hardStageMap; // The 'Hard' stage, which is reused for every play
+
+    private static final int LEADERBOARD_SIZE = 5; // Number of finish times shown per difficulty
+
+    private JLabel[][] leaderboardLabels; // Labels for the shown finish times per difficulty
+
+    private boolean[] leaderboardChanged; // Whether a difficulty has new scores to show
+
+    private final Leaderboard[] scores = new Leaderboard[StageEngine.Difficulty.values().length];
+    /* Creates a leaderboard for each stage difficulty (indexed by the order of the difficulties),
+     * which keeps the lowest finished stage times and the finished stage times of each player.
      */
 
-    int elapsedTime; // Elapsed time in seconds (changing digit)
+    private volatile ScoreStore scoreStore; // Keeps the scores on disk (null if they can't be saved)
+
+    private GameStage activeStage; // The stage which is played, of which the time is shown
+
+    private JCheckBox realTimeMode; // Whether the monsters keep moving while the player waits
 
     int screenSizeHorizontal = 1280; // Game window screen (horizontal dimension)
 
@@ -61,11 +76,25 @@ public class GameWindow extends JFrame {
         gameFrame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         gameFrame.setLocationRelativeTo(null); // Centering the game window to the computer screen
         
-        // Returns empty hashmap instead of null to avoid error of showing multiple scores at once.
-        for (GameStage.Difficulty difficulty : GameStage.Difficulty.values()) {
-            scores.put(difficulty, new HashMap<>());
+        // Creates an empty leaderboard for each stage difficulty.
+        for (StageEngine.Difficulty difficulty : StageEngine.Difficulty.values()) {
+            scores[difficulty.ordinal()] = new Leaderboard(LEADERBOARD_SIZE);
         }
 
+        /* Loads the scores of earlier games, where the game can still be played
+         * (without saving the scores) if the score files can't be used.
+         */
+        try {
+            scoreStore = new ScoreStore(Path.of("escapade-scores"), scores);
+        } catch (IOException | RuntimeException e) {
+            reportError("Scores can't be loaded or saved: " + e.getMessage());
+        }
+
+        /* The added scores are forced to disk when the game exits (see ScoreStore),
+         * which happens on the Event Dispatch Thread, so no score is added meanwhile.
+         */
+        Runtime.getRuntime().addShutdownHook(new Thread(this::closeScores, "Escapade scores"));
+
         gameScreen(); // Calls the GUI components in the home screen
     }
 
@@ -81,6 +110,7 @@ public class GameWindow extends JFrame {
         cardPanel.add(easyStage(), "Easy");
         cardPanel.add(mediumStage(), "Medium");
         cardPanel.add(hardStage(), "Hard");
+        cardPanel.add(leaderboardPanel(), "Leaderboard");
 
         card.show(cardPanel, "Home Screen");
         gameFrame.add(cardPanel);
@@ -315,6 +345,9 @@ public class GameWindow extends JFrame {
         JButton buttonEasyStage = new JButton("Easy"); // 'Easy' stage
         JButton buttonMediumStage = new JButton("Medium"); // 'Medium' stage
         JButton buttonHardStage = new JButton("Hard"); // 'Hard' stage
+        realTimeMode = new JCheckBox("Real-time (monsters keep moving)");
+        realTimeMode.setBackground(new Color(39, 105, 135));
+        realTimeMode.setForeground(Color.WHITE);
 
         buttonPanel.add(Box.createHorizontalGlue());
         buttonPanel.add(buttonEasyStage);
@@ -323,33 +356,29 @@ public class GameWindow extends JFrame {
         buttonPanel.add(Box.createRigidArea(new Dimension(40, 0)));
         buttonPanel.add(buttonHardStage);
         buttonPanel.add(Box.createRigidArea(new Dimension(40, 0)));
+        buttonPanel.add(realTimeMode);
+        buttonPanel.add(Box.createRigidArea(new Dimension(40, 0)));
         buttonPanel.add(Box.createHorizontalGlue());
 
         // Listener for the 'Easy' stage.
         buttonEasyStage.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                startStageTime();
-                cardPanel.add(easyStage(), "Easy");
-                card.show(cardPanel, "Easy");
+                startStage(easyStageMap, "Easy", easyTimePanel);
             }
         });
         // Listener for the 'Medium' stage.
         buttonMediumStage.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                startStageTime();
-                cardPanel.add(mediumStage(), "Medium");
-                card.show(cardPanel, "Medium");
+                startStage(mediumStageMap, "Medium", mediumTimePanel);
             }
         });
         // Listener for the 'Hard' stage.
         buttonHardStage.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                startStageTime();
-                cardPanel.add(hardStage(), "Hard");
-                card.show(cardPanel, "Hard");
+                startStage(hardStageMap, "Hard", hardTimePanel);
             }
         });
 
@@ -368,6 +397,27 @@ public class GameWindow extends JFrame {
         return stageSelectionPanel;
     }
 
+    /** Starts a new play of a stage, where the stage map of the stage is generated again
+     *  (instead of creating a new stage screen), and shows the stage screen.
+     * 
+     * @param stage The stage to play.
+     * @param stageName The name of the stage screen in the card layout.
+     * @param timePanel The panel of the stage screen which shows the stopwatch.
+     */
+    private void startStage(GameStage stage, String stageName, JPanel timePanel) {
+        stage.reset(playerName);
+        activeStage = stage;
+
+        // Move the stopwatch to the played stage screen (if it isn't already there).
+        if (stopwatch.getParent() != timePanel) {
+            timePanel.add(stopwatch);
+            timePanel.revalidate();
+        }
+        startStageTime();
+        stage.start(refreshRate(), realTimeMode.isSelected());
+        card.show(cardPanel, stageName);
+    }
+
     public void showStageSelectionScreen() {
         card.show(cardPanel, "Stage Selection");
     }
@@ -441,23 +491,13 @@ public class GameWindow extends JFrame {
         return stageDesc;
     }
 
-    /** Sets a default time label when entering a stage.
+    /** Formats a finished stage time in seconds with milliseconds, such as "12.345s".
      * 
-     * @return timeLabel, the elapsed time label which shows the duration of being in the stage.
+     * @param millis The finished stage time in milliseconds.
+     * @return The formatted time.
      */
-    private JLabel timeLabel() {
-        // Set stopwatch for the stage.
-        JLabel timeLabel = new JLabel(" Elapsed Time:  0s");
-        timeLabel.setForeground(Color.BLACK);
-        timeLabel.setFont(new Font("DialogInput", Font.BOLD, 14));
-        timeLabel.setAlignmentY(BOTTOM_ALIGNMENT);
-
-        return timeLabel;
-    }
-
-    // Method to get the elapsed time.
-    public int getElapsedTime() {
-        return elapsedTime;
+    public static String formatTime(int millis) {
+        return String.format("%d.%03ds", millis / 1000, millis % 1000);
     }
 
     /** Formatting and adding all prior components (via methods) into the 'Easy' stage screen.
@@ -496,11 +536,8 @@ public class GameWindow extends JFrame {
         );
         goodLuckMessage.setFont(new Font("Dialog", Font.PLAIN, 18));
         
-        // Set the stopwatch.
-        easyTimeLabel = timeLabel();
-
         // Adding stage map
-        GameStage easyStageMap = new GameStage(this, GameStage.Difficulty.EASY);
+        easyStageMap = new GameStage(this, StageEngine.Difficulty.EASY);
         easyStageMap.setAlignmentX(Component.CENTER_ALIGNMENT);
         easyStageMap.setAlignmentY(Component.CENTER_ALIGNMENT);
         easyStageMap.setPlayerName(playerName);
@@ -523,7 +560,7 @@ public class GameWindow extends JFrame {
         labelPanel2.add(obstacleDesc);
         labelPanel2.add(monsterDesc);
         labelPanel2.add(goodLuckMessage);
-        labelPanel2.add(easyTimeLabel);
+        easyTimePanel = labelPanel2; // The stopwatch is added when the stage is played.
 
         // Adding all the implemented components to the 'Easy' stage screen.
         easyStagePanel.add(labelPanel1);
@@ -568,11 +605,8 @@ public class GameWindow extends JFrame {
         );
         goodLuckMessage.setFont(new Font("Dialog", Font.PLAIN, 18));
 
-        // Set stopwatch.
-        mediumTimeLabel = timeLabel();
-
         // Adding stage map
-        GameStage mediumStageMap = new GameStage(this, GameStage.Difficulty.MEDIUM);
+        mediumStageMap = new GameStage(this, StageEngine.Difficulty.MEDIUM);
         mediumStageMap.setAlignmentX(Component.CENTER_ALIGNMENT);
         mediumStageMap.setAlignmentY(Component.CENTER_ALIGNMENT);
         mediumStageMap.setPlayerName(playerName);
@@ -595,7 +629,7 @@ public class GameWindow extends JFrame {
         labelPanel2.add(obstacleDesc);
         labelPanel2.add(monsterDesc);
         labelPanel2.add(goodLuckMessage);
-        labelPanel2.add(mediumTimeLabel);
+        mediumTimePanel = labelPanel2; // The stopwatch is added when the stage is played.
 
         // Adding all the implemented components to the 'Medium' stage screen.
         mediumStagePanel.add(labelPanel1);
@@ -642,11 +676,8 @@ public class GameWindow extends JFrame {
         );
         goodLuckMessage.setFont(new Font("Dialog", Font.PLAIN, 18));        
 
-        // Set the stopwatch.
-        hardTimeLabel = timeLabel();
-
         // Adding stage map
-        GameStage hardStageMap = new GameStage(this, GameStage.Difficulty.HARD);
+        hardStageMap = new GameStage(this, StageEngine.Difficulty.HARD);
         hardStageMap.setAlignmentX(Component.CENTER_ALIGNMENT);
         hardStageMap.setAlignmentY(Component.CENTER_ALIGNMENT);
         hardStageMap.setPlayerName(playerName);
@@ -669,7 +700,7 @@ public class GameWindow extends JFrame {
         labelPanel2.add(obstacleDesc);
         labelPanel2.add(monsterDesc);
         labelPanel2.add(goodLuckMessage);
-        labelPanel2.add(hardTimeLabel);
+        hardTimePanel = labelPanel2; // The stopwatch is added when the stage is played.
 
         // Adding all the implemented components to the 'Hard' stage screen.
         hardStagePanel.add(labelPanel1);
@@ -688,24 +719,36 @@ public class GameWindow extends JFrame {
             stageTime.stop();
         }
 
-        elapsedTime = 0; // Reset stopwatch every time a stage screen is opened.
-        easyTimeLabel.setText(" Elapsed Time:  0s");
-        mediumTimeLabel.setText(" Elapsed Time:  0s");
-        hardTimeLabel.setText(" Elapsed Time:  0s");
+        stopwatch.setElapsed(0); // Reset stopwatch every time a stage screen is opened.
 
-        stageTime = new Timer(1000, new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                elapsedTime++;
-                easyTimeLabel.setText(" Elapsed Time:  " + elapsedTime + "s");
-                mediumTimeLabel.setText(" Elapsed Time:  " + elapsedTime + "s");
-                hardTimeLabel.setText(" Elapsed Time:  " + elapsedTime + "s");
-            }
-        });
+        /* The stopwatch is updated once every frame of the screen, where it only shows
+         * the stage time of the played stage (which the stage engine measures itself).
+         * The stopwatch is only in the played stage screen, so hidden stage screens do nothing.
+         */
+        if (stageTime == null) {
+            stageTime = new Timer(1000 / refreshRate(), new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    stopwatch.setElapsed(activeStage.getEngine().getElapsedNanos());
+                }
+            });
+        } else {
+            stageTime.setDelay(1000 / refreshRate());
+        }
 
         stageTime.start();
     }
 
+    /** Returns the refresh rate of the screen with the game window.
+     * 
+     * @return The number of frames per second (60 if the screen doesn't tell).
+     */
+    private int refreshRate() {
+        int refreshRate = gameFrame.getGraphicsConfiguration().getDevice()
+            .getDisplayMode().getRefreshRate();
+        return refreshRate == DisplayMode.REFRESH_RATE_UNKNOWN ? 60 : refreshRate;
+    }
+
     /** Stops the stopwatch when the listeners for the 'Quit Stage', 'Quit Game Session', 
      *  and 'Quit Game' stage screens are activated 
      *  (the corresponding respective buttons are clicked).
@@ -714,65 +757,76 @@ public class GameWindow extends JFrame {
         if (stageTime != null && stageTime.isRunning()) {
             stageTime.stop();
         }
-    }
-
-    /** Creates a pair for comparison with player time to sort in the leaderboards.
-     */
-    private static class Pair<A, B> {
-        public A a;
-        public B b;
-
-        public Pair(A a, B b) {
-            this.a = a;
-            this.b = b;
+        if (activeStage != null) {
+            activeStage.stop(); // The stage stops once it is over or left.
         }
     }
 
-    /** Put the stage difficulty, inputted player name, and the finished stage time in a map.
+    /** Put the stage difficulty, inputted player name, and the finished stage time 
+     *  in the leaderboard of the stage difficulty.
      * 
      * @param difficulty The stage with the corresponding difficulty.
      * @param playerName The inputted player name.
-     * @param score The score (finished stage time).
+     * @param score The score (finished stage time in milliseconds).
      */
-    public void registerScore(GameStage.Difficulty difficulty, String playerName, int score) {
-        Map<String, List<Integer>> playerFinishTimes = scores.getOrDefault(difficulty, 
-            new HashMap<>());
-        List<Integer> finishTimes = playerFinishTimes.getOrDefault(playerName, new ArrayList<>());
-        finishTimes.add(score);
-        playerFinishTimes.put(playerName, finishTimes);
-        scores.put(difficulty, playerFinishTimes);
+    public void registerScore(StageEngine.Difficulty difficulty, String playerName, int score) {
+        scores[difficulty.ordinal()].add(playerName, score);
+
+        // Saves the score, where scores are only kept while the game runs if saving fails.
+        if (scoreStore != null) {
+            try {
+                scoreStore.append(difficulty, playerName, score);
+            } catch (IOException | RuntimeException e) {
+                reportError("Scores can't be saved anymore: " + e.getMessage());
+                scoreStore = null;
+            }
+        }
+
+        // The leaderboard of this difficulty is updated the next time it is shown.
+        leaderboardChanged[difficulty.ordinal()] = true;
     }
 
-    /** Flattens two maps into one, where the first map contains the stage difficulty,
-     *  and the second contains an inputted player name mapped with the corresponding finished
-     *  stage time.
-     *  After doing so, return a new pair with only the inputted player name and the corresponding
-     *  finished stage time, where we compare to see which one has the lower finished stage time. 
+    /** Shows a problem which doesn't stop the game (scores or replays which can't be saved)
+     *  in a message. The game can still be played, so the message is shown after the current
+     *  event on the Event Dispatch Thread.
      * 
-     * @param difficulty The stage with the corresponding difficulty.
-     * @return An integer which indicates whether the player time with 
-     *      the corresponding player name is lower than the other or not.
+     * @param message The problem.
      */
-    public List<Pair<String, Integer>> getScores(GameStage.Difficulty difficulty) {
-        return scores.get(difficulty).entrySet().stream().flatMap(entry -> {
-            return entry.getValue().stream().map(value -> {
-                return new Pair<>(entry.getKey(), value);
-            });
-        }).sorted(new Comparator<Pair<String, Integer>>() {
+    public void reportError(String message) {
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(
+            this, message, "Escapade", JOptionPane.WARNING_MESSAGE));
+    }
 
-            @Override
-            public int compare(GameWindow.Pair<String, Integer> o1, 
-                GameWindow.Pair<String, Integer> o2) {
-                return o1.b.compareTo(o2.b);
+    /** Forces the saved scores to disk and closes the score files, when the game exits.
+     */
+    private void closeScores() {
+        if (scoreStore != null) {
+            try {
+                scoreStore.close();
+            } catch (IOException e) {
+                // The game window is gone, so the problem can only be printed.
+                System.err.println("Scores can't be saved: " + e.getMessage());
             }
-           
-        }).toList();
+            scoreStore = null;
+        }
     }
 
-    /** Displays the leaderboard, where it shows 10 stage plays with: 
+    /** Returns the leaderboard of a stage difficulty, which keeps the lowest finished stage times
+     *  in order and the finished stage times of each player.
+     * 
+     * @param difficulty The stage with the corresponding difficulty.
+     * @return The leaderboard of the stage difficulty.
+     */
+    public Leaderboard getScores(StageEngine.Difficulty difficulty) {
+        return scores[difficulty.ordinal()];
+    }
+
+    /** Displays the leaderboard, where it shows 5 stage plays for each stage difficulty with: 
      * - the lowest finished stage time,
      * - the stage difficulty,
      * - inputted player name.
+     * The leaderboard screen is created once, and the shown scores are updated
+     * by updateLeaderboard when there are new scores.
      * 
      * @return leaderboardPanel, the leaderboard screen.
      */
@@ -801,34 +855,29 @@ public class GameWindow extends JFrame {
         /* Generate sections for stage difficulty, where the inputted player name
          * and finished stage time is shown in order of the time.
          */
-        for (GameStage.Difficulty difficulty : GameStage.Difficulty.values()) {
+        int difficulties = StageEngine.Difficulty.values().length;
+        leaderboardLabels = new JLabel[difficulties][LEADERBOARD_SIZE];
+        leaderboardChanged = new boolean[difficulties];
+        for (StageEngine.Difficulty difficulty : StageEngine.Difficulty.values()) {
             JLabel difficultyLabel = new JLabel("Stage Difficulty: " + difficulty);
             difficultyLabel.setForeground(Color.WHITE);
             difficultyLabel.setFont(new Font("Monospaced", Font.PLAIN, 16));
             difficultyLabel.setAlignmentX(CENTER_ALIGNMENT);
             leaderboardPanel.add(difficultyLabel);
 
-            List<Pair<String, Integer>> scores = getScores(difficulty);
-            int leaderboardDisplay = Math.min(5, scores.size());
-
-            /* Add the pair of the inputted player name and the finished stage time
-             * into the leaderboard panel.
+            /* Add labels for the inputted player names and the finished stage times,
+             * where the text is set once there are scores for the difficulty.
              */
-            for (int rank = 0; rank < leaderboardDisplay; rank++) {
-                Pair<String, Integer> scoreEntry = scores.get(rank);
-                String playerName = scoreEntry.a;
-                int finishTime = scoreEntry.b;
-
-                JLabel scoreLabel = new JLabel((rank + 1) + ". " + playerName 
-                    + " : " + finishTime + "s");
+            for (int rank = 0; rank < LEADERBOARD_SIZE; rank++) {
+                JLabel scoreLabel = new JLabel();
                 scoreLabel.setForeground(Color.WHITE);
                 scoreLabel.setFont(new Font("Monospaced", Font.PLAIN, 16));
                 scoreLabel.setAlignmentX(CENTER_ALIGNMENT);
+                scoreLabel.setVisible(false);
                 leaderboardPanel.add(scoreLabel);
-
-                // New updates to the leaderboard panel whenever there is a new play.
-                leaderboardPanel.revalidate();
+                leaderboardLabels[difficulty.ordinal()][rank] = scoreLabel;
             }
+            leaderboardChanged[difficulty.ordinal()] = true;
         }
 
         // Add home button
@@ -846,10 +895,44 @@ public class GameWindow extends JFrame {
         return leaderboardPanel; // Return the leaderboard panel.
     }
 
-    /** Redirects to the leaderboard.
+    /** Updates the shown finished stage times of a stage difficulty in the leaderboard.
+     * 
+     * @param difficulty The stage with the corresponding difficulty.
+     */
+    private void updateLeaderboard(StageEngine.Difficulty difficulty) {
+        /* The lowest times are read from the index of the saved scores
+         * (or from the leaderboard if the scores aren't saved).
+         */
+        Leaderboard scores = getScores(difficulty);
+        ScoreIndex savedScores = scoreStore == null ? null : scoreStore.getIndex(difficulty);
+        long scoreCount = savedScores == null ? scores.size() : savedScores.size();
+        int leaderboardDisplay = (int) Math.min(LEADERBOARD_SIZE, scoreCount);
+        JLabel[] scoreLabels = leaderboardLabels[difficulty.ordinal()];
+
+        // Show the inputted player name and the finished stage time for each rank.
+        for (int rank = 0; rank < LEADERBOARD_SIZE; rank++) {
+            if (rank < leaderboardDisplay) {
+                String playerName = savedScores == null
+                    ? scores.getName(rank) : savedScores.getName(rank);
+                int finishTime = savedScores == null
+                    ? scores.getTime(rank) : savedScores.getTime(rank);
+                scoreLabels[rank].setText((rank + 1) + ". " + playerName 
+                    + " : " + formatTime(finishTime));
+            }
+            scoreLabels[rank].setVisible(rank < leaderboardDisplay);
+        }
+        leaderboardChanged[difficulty.ordinal()] = false;
+    }
+
+    /** Redirects to the leaderboard, where only the stage difficulties with new scores
+     *  are updated.
      */
     public void showLeaderboard() {
-        cardPanel.add(leaderboardPanel(), "Leaderboard");
+        for (StageEngine.Difficulty difficulty : StageEngine.Difficulty.values()) {
+            if (leaderboardChanged[difficulty.ordinal()]) {
+                updateLeaderboard(difficulty);
+            }
+        }
         card.show(cardPanel, "Leaderboard");
     }
     
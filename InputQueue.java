@@ -0,0 +1,105 @@
+/** This queues the moves of the pressed keys until the game loop does them in its steps,
+ *  so a pressed key never runs the stage itself. The queue holds at most CAPACITY moves:
+ *  - A move which is the same as the last queued move is coalesced into it (not queued again),
+ *    since the key was repeated before the game loop could do the queued move.
+ *  - If the queue is full, the last queued move is replaced by the new move,
+ *    so the latest pressed key is always done.
+ *  The number of queued moves is kept as a metric, together with the largest number of queued
+ *  moves and the number of coalesced and replaced moves.
+ *  The keys are queued on the Event Dispatch Thread and the moves are taken on the simulation
+ *  thread of the game loop, so every method holds the lock of the queue (only for a few
+ *  array accesses, so a pressed key never waits for a step).
+ */
+public class InputQueue {
+
+    static final int CAPACITY = 8; // Largest number of queued moves.
+
+    private final StageEngine.Move[] moves = new StageEngine.Move[CAPACITY]; // Ring of moves.
+
+    private int head; // Position of the first queued move in the ring.
+
+    private int count; // Number of queued moves.
+
+    private int maxDepth; // Largest number of queued moves since the queue was created.
+
+    private long coalesced; // Number of moves which were the same as the last queued move.
+
+    private long replaced; // Number of moves which replaced the last move of a full queue.
+
+    /** Queues the move of a pressed key.
+     *
+     * @param move The move of the player.
+     */
+    public synchronized void offer(StageEngine.Move move) {
+        if (count > 0) {
+            int last = (head + count - 1) % CAPACITY;
+            if (moves[last] == move) {
+                coalesced++; // The key was repeated before the queued move was done.
+                return;
+            }
+            if (count == CAPACITY) {
+                moves[last] = move; // The queue is full, so the latest key replaces the last.
+                replaced++;
+                return;
+            }
+        }
+        moves[(head + count) % CAPACITY] = move;
+        count++;
+        maxDepth = Math.max(maxDepth, count);
+    }
+
+    /** Takes the first queued move.
+     *
+     * @return The first queued move, or null if no move is queued.
+     */
+    public synchronized StageEngine.Move poll() {
+        if (count == 0) {
+            return null;
+        }
+        StageEngine.Move move = moves[head];
+        moves[head] = null;
+        head = (head + 1) % CAPACITY;
+        count--;
+        return move;
+    }
+
+    /** Forgets every queued move.
+     */
+    public synchronized void clear() {
+        while (count > 0) {
+            poll();
+        }
+    }
+
+    /** Returns the number of queued moves (the depth of the queue).
+     *
+     * @return The number of queued moves.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /** Returns the largest number of queued moves since the queue was created.
+     *
+     * @return The largest depth of the queue.
+     */
+    public synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /** Returns the number of moves which were coalesced into the last queued move.
+     *
+     * @return The number of coalesced moves.
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    /** Returns the number of moves which replaced the last move of a full queue.
+     *
+     * @return The number of replaced moves.
+     */
+    public synchronized long getReplaced() {
+        return replaced;
+    }
+}
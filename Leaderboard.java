@@ -0,0 +1,353 @@
+// All imports needed to keep the finished stage times of one stage difficulty.
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/** This keeps the finished stage times of one stage difficulty, where:
+ *  - The lowest finished stage times are kept in order (only as many as are shown).
+ *  - Every finished stage time of each player is kept in the history of the player.
+ *  - The best finished stage time of each player is kept in order, to find the rank of a player.
+ *  Adding a finished stage time and asking for the lowest times or the rank of a player
+ *  doesn't depend on the number of times that the stage has been played:
+ *  - A time is added to the lowest times with a binary search and a shift of at most size times.
+ *  - A time which improves the best time of a player moves that best time in the ordered best
+ *    times with a binary search and System.arraycopy, which shifts up to one int per player.
+ *    So this part takes time in proportion to the number of players (not the number of plays),
+ *    which ScoresBenchmark.addNewPlayer measures: about 1 microsecond with 100000 players.
+ *  - The rank of a player is a binary search in the best times.
+ *  A snapshot of the leaderboard keeps the lowest times and the best time and number of plays
+ *  of each player, but not the history of each player. So the history of a player only has
+ *  the times of this session (since the leaderboard was created or restored from a snapshot),
+ *  while every time stays in the score log (see ScoreStore).
+ */
+public class Leaderboard {
+
+    /** The finished stage times of one player.
+     */
+    private static class PlayerHistory {
+        private int[] times = new int[4]; // Every finished stage time, in order of play.
+        private int count; // Number of finished stage times.
+        private int best = Integer.MAX_VALUE; // The lowest finished stage time.
+        private int restoredCount; // Number of finished stage times before the snapshot.
+    }
+
+    private final int[] topTimes; // The lowest finished stage times, from low to high.
+
+    private final String[] topNames; // The player names of the lowest finished stage times.
+
+    private int topCount; // Number of lowest finished stage times that are kept.
+
+    private final Map<String, PlayerHistory> histories = new HashMap<>(); // History per player.
+
+    private int[] bestTimes = new int[16]; // The best time of each player, from low to high.
+
+    private long playCount; // Number of finished stage times of all players.
+
+    /** Creates an empty leaderboard.
+     *
+     * @param size The number of lowest finished stage times that are kept.
+     */
+    public Leaderboard(int size) {
+        topTimes = new int[size];
+        topNames = new String[size];
+    }
+
+    /** Adds a finished stage time of a player. If the time is the best time of the player,
+     *  the best times of the slower players are shifted (see the cost above).
+     *
+     * @param playerName The inputted player name.
+     * @param time The finished stage time.
+     */
+    public void add(String playerName, int time) {
+        playCount++;
+
+        // Keep the time if it is one of the lowest times (after equal times that came earlier).
+        int position = upperBound(topTimes, topCount, time);
+        if (position < topTimes.length) {
+            int moved = Math.min(topCount, topTimes.length - 1) - position;
+            System.arraycopy(topTimes, position, topTimes, position + 1, moved);
+            System.arraycopy(topNames, position, topNames, position + 1, moved);
+            topTimes[position] = time;
+            topNames[position] = playerName;
+            topCount = Math.min(topCount + 1, topTimes.length);
+        }
+
+        // Add the time to the history of the player.
+        PlayerHistory history = histories.get(playerName);
+        if (history == null) {
+            history = new PlayerHistory();
+            histories.put(playerName, history);
+        }
+        if (history.count == history.times.length) {
+            history.times = Arrays.copyOf(history.times, history.count * 2);
+        }
+        history.times[history.count++] = time;
+
+        // Move the best time of the player if the player has improved.
+        if (time < history.best) {
+            int playerCount = histories.size();
+            if (history.best != Integer.MAX_VALUE) {
+                // Remove the previous best time of the player.
+                int previous = lowerBound(bestTimes, playerCount, history.best);
+                System.arraycopy(bestTimes, previous + 1, bestTimes, previous,
+                    playerCount - 1 - previous);
+            } else if (playerCount > bestTimes.length) {
+                // A new player, where there is no room left for another best time.
+                bestTimes = Arrays.copyOf(bestTimes, bestTimes.length * 2);
+            }
+
+            // The best times of the other players are in order, so insert the new best time.
+            int bestPosition = lowerBound(bestTimes, playerCount - 1, time);
+            System.arraycopy(bestTimes, bestPosition, bestTimes, bestPosition + 1,
+                playerCount - 1 - bestPosition);
+            bestTimes[bestPosition] = time;
+            history.best = time;
+        }
+    }
+
+    /** Returns the number of lowest finished stage times which are kept (at most the size).
+     *
+     * @return The number of kept lowest times.
+     */
+    public int size() {
+        return topCount;
+    }
+
+    /** Returns the player name of a rank in the lowest finished stage times.
+     *
+     * @param rank The rank, where 0 is the lowest time.
+     * @return The inputted player name.
+     */
+    public String getName(int rank) {
+        return topNames[rank];
+    }
+
+    /** Returns the finished stage time of a rank in the lowest finished stage times.
+     *
+     * @param rank The rank, where 0 is the lowest time.
+     * @return The finished stage time.
+     */
+    public int getTime(int rank) {
+        return topTimes[rank];
+    }
+
+    /** Returns the rank of a player, where players are ranked by their best time
+     *  (players with the same best time have the same rank).
+     *
+     * @param playerName The inputted player name.
+     * @return The rank, where 1 is the best player, or -1 if the player has no times.
+     */
+    public int rankOf(String playerName) {
+        PlayerHistory history = histories.get(playerName);
+        if (history == null) {
+            return -1;
+        }
+        return lowerBound(bestTimes, histories.size(), history.best) + 1;
+    }
+
+    /** Returns the finished stage times of a player in this session, in order of play.
+     *  The times before the leaderboard was restored from a snapshot aren't included,
+     *  since the snapshot only keeps the best time and the number of plays of each player
+     *  (see getBestTime and getPlayCount, which do include them).
+     *
+     * @param playerName The inputted player name.
+     * @return The finished stage times (empty if the player has no times).
+     */
+    public int[] getHistory(String playerName) {
+        PlayerHistory history = histories.get(playerName);
+        if (history == null) {
+            return new int[0];
+        }
+        return Arrays.copyOf(history.times, history.count);
+    }
+
+    /** Returns the best finished stage time of a player.
+     *
+     * @param playerName The inputted player name.
+     * @return The best time, or -1 if the player has no times.
+     */
+    public int getBestTime(String playerName) {
+        PlayerHistory history = histories.get(playerName);
+        return history == null ? -1 : history.best;
+    }
+
+    /** Returns the number of finished stage times of a player, including the times before
+     *  the leaderboard was restored from a snapshot.
+     *
+     * @param playerName The inputted player name.
+     * @return The number of plays of the player.
+     */
+    public int getPlayCount(String playerName) {
+        PlayerHistory history = histories.get(playerName);
+        return history == null ? 0 : history.restoredCount + history.count;
+    }
+
+    /** Returns the number of lowest finished stage times that can be kept.
+     *
+     * @return The size of the leaderboard.
+     */
+    public int capacity() {
+        return topTimes.length;
+    }
+
+    /** Returns the number of finished stage times of all players.
+     *
+     * @return The number of plays.
+     */
+    public long getPlayCount() {
+        return playCount;
+    }
+
+    /** Returns the number of players with at least one finished stage time.
+     *
+     * @return The number of players.
+     */
+    public int getPlayerCount() {
+        return histories.size();
+    }
+
+    /** Returns the number of bytes which writeSnapshot writes.
+     *
+     * @return The size of the snapshot in bytes.
+     */
+    int snapshotSize() {
+        int bytes = Long.BYTES + Integer.BYTES; // Number of plays and of lowest times.
+        for (int rank = 0; rank < topCount; rank++) {
+            bytes += nameSize(topNames[rank]) + Integer.BYTES;
+        }
+        bytes += Integer.BYTES; // Number of players.
+        for (String playerName : histories.keySet()) {
+            bytes += nameSize(playerName) + 2 * Integer.BYTES;
+        }
+        return bytes;
+    }
+
+    /** Writes the lowest finished stage times and the best time and number of plays
+     *  of each player.
+     *
+     * @param buffer The buffer to write to, with at least snapshotSize bytes left.
+     */
+    void writeSnapshot(ByteBuffer buffer) {
+        buffer.putLong(playCount);
+        buffer.putInt(topCount);
+        for (int rank = 0; rank < topCount; rank++) {
+            putName(buffer, topNames[rank]);
+            buffer.putInt(topTimes[rank]);
+        }
+        buffer.putInt(histories.size());
+        for (Map.Entry<String, PlayerHistory> entry : histories.entrySet()) {
+            PlayerHistory history = entry.getValue();
+            putName(buffer, entry.getKey());
+            buffer.putInt(history.best);
+            buffer.putInt(history.restoredCount + history.count);
+        }
+    }
+
+    /** Restores an empty leaderboard from a snapshot written by writeSnapshot.
+     *
+     * @param buffer The buffer to read from.
+     * @throws IllegalArgumentException If the snapshot doesn't fit this leaderboard.
+     */
+    void readSnapshot(ByteBuffer buffer) {
+        playCount = buffer.getLong();
+        int count = buffer.getInt();
+        if (count < 0 || count > topTimes.length) {
+            throw new IllegalArgumentException("Snapshot has " + count + " lowest times.");
+        }
+        for (int rank = 0; rank < count; rank++) {
+            topNames[rank] = getName(buffer);
+            topTimes[rank] = buffer.getInt();
+        }
+        topCount = count;
+
+        int playerCount = buffer.getInt();
+        if (playerCount < 0) {
+            throw new IllegalArgumentException("Snapshot has " + playerCount + " players.");
+        }
+        bestTimes = new int[Math.max(16, playerCount)];
+        for (int k = 0; k < playerCount; k++) {
+            PlayerHistory history = new PlayerHistory();
+            String playerName = getName(buffer);
+            history.best = buffer.getInt();
+            history.restoredCount = buffer.getInt();
+            histories.put(playerName, history);
+            bestTimes[k] = history.best;
+        }
+        Arrays.sort(bestTimes, 0, playerCount);
+    }
+
+    /** Returns the number of bytes of a player name in a snapshot.
+     *
+     * @param playerName The inputted player name.
+     * @return The number of bytes.
+     */
+    private static int nameSize(String playerName) {
+        return Short.BYTES + playerName.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /** Writes a player name, with its length first.
+     *
+     * @param buffer The buffer to write to.
+     * @param playerName The inputted player name.
+     */
+    private static void putName(ByteBuffer buffer, String playerName) {
+        byte[] name = playerName.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+    }
+
+    /** Reads a player name written by putName.
+     *
+     * @param buffer The buffer to read from.
+     * @return The inputted player name.
+     */
+    private static String getName(ByteBuffer buffer) {
+        byte[] name = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /** Finds the first position in a sorted array with a value of at least the given value.
+     *
+     * @param values The sorted values.
+     * @param count The number of values in the array that are used.
+     * @param value The value to look for.
+     * @return The position.
+     */
+    private static int lowerBound(int[] values, int count, int value) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /** Finds the first position in a sorted array with a value above the given value.
+     *
+     * @param values The sorted values.
+     * @param count The number of values in the array that are used.
+     * @param value The value to look for.
+     * @return The position.
+     */
+    private static int upperBound(int[] values, int count, int value) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
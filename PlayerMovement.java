@@ -10,22 +10,22 @@ public class PlayerMovement {
     private int previousX; // Previous valid position (x-coordinate)
     private int previousY; // Previous valid position (y-coordinate)
     private boolean dead; // Dead
-    private GameStage gameStage; // The game stage
+    private StageEngine stage; // The stage engine
 
     /**
      * Initializes the PlayerMovement with a starting position and sets the player as alive.
      *
      * @param startX the initial x-coordinate of the player.
      * @param startY the initial y-coordinate of the player.
-     * @param gameStage the game stage.
+     * @param stage the stage engine.
      */
-    public PlayerMovement(int startX, int startY, GameStage gameStage) {
+    public PlayerMovement(int startX, int startY, StageEngine stage) {
         this.playerX = startX;
         this.playerY = startY;
         this.previousX = startX;
         this.previousY = startY;
         this.dead = false; // Player starts alive.
-        this.gameStage = gameStage;
+        this.stage = stage;
     }
 
     /**
@@ -111,51 +111,75 @@ public class PlayerMovement {
         dead = false; 
     }
 
+    /**
+     * Moves the player one cell in a direction if the player can move there,
+     * without moving the monsters (the stage engine decides when the monsters move).
+     *
+     * @param move the direction of the move.
+     */
+    public void move(StageEngine.Move move) {
+        int newX = playerX;
+        int newY = playerY;
+        switch (move) {
+            case UP -> newY -= 1;
+            case DOWN -> newY += 1;
+            case LEFT -> newX -= 1;
+            case RIGHT -> newX += 1;
+            default -> {
+                // No other cases to cover since there are only 4 directions.
+            }
+        }
+        if (stage.canMoveTo(newY, newX)) {
+            playerX = newX;
+            playerY = newY;
+        }
+    }
+
     /**
      * Checks if the player can move up according to the game stage bounds.
      * Moves the monsters according to the player's movement from the method tick()
-     * in GameStage.
+     * in StageEngine.
      */
     public void moveUp() {
-        if (gameStage.canMoveTo(playerY - 1, playerX)) {
+        if (stage.canMoveTo(playerY - 1, playerX)) {
             playerY -= 1;
         }
-        gameStage.tick();
+        stage.tick();
     }
 
     /**
      * Checks if the player can move down according to the game stage bounds.
      * Moves the monsters according to the player's movement from the method tick()
-     * in GameStage.
+     * in StageEngine.
      */
     public void moveDown() {
-        if (gameStage.canMoveTo(playerY + 1, playerX)) {
+        if (stage.canMoveTo(playerY + 1, playerX)) {
             playerY += 1;
         }
-        gameStage.tick();
+        stage.tick();
     }
 
     /**
      * Checks if the player can move left according to the game stage bounds.
      * Moves the monsters according to the player's movement from the method tick()
-     * in GameStage.
+     * in StageEngine.
      */
     public void moveLeft() {
-        if (gameStage.canMoveTo(playerY, playerX - 1 )) {
+        if (stage.canMoveTo(playerY, playerX - 1 )) {
             playerX -= 1;    
         }
-        gameStage.tick();
+        stage.tick();
     }
 
     /**
      * Checks if the player can move right according to the game stage bounds.
      * Moves the monsters according to the player's movement from the method tick()
-     * in GameStage.
+     * in StageEngine.
      */
     public void moveRight() {
-        if (gameStage.canMoveTo(playerY, playerX + 1)) {
+        if (stage.canMoveTo(playerY, playerX + 1)) {
             playerX += 1;
         }
-        gameStage.tick();
+        stage.tick();
     }
 }
\ No newline at end of file
@@ -0,0 +1,201 @@
+// All imports needed to read a replay file and play it again.
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/** This is a played stage as it was recorded in a replay file (see ReplayRecorder for the
+ *  format), which can be played again in a stage engine without a display and without waiting:
+ *  the stage engine is seeded with the recorded seed, and its clock returns the recorded time
+ *  of each event, so the replayed stage has the same stage time as the recorded one.
+ *  An event which was only partly written (if the game stopped while it was recorded)
+ *  is left out.
+ */
+public class Replay {
+
+    private static final StageEngine.Move[] MOVES = StageEngine.Move.values(); // Moves by order.
+
+    private final StageEngine.Difficulty difficulty; // The stage difficulty.
+
+    private final boolean realTime; // Whether the real-time mode was played.
+
+    private final long seed; // The seed of the stage map.
+
+    private final String playerName; // The inputted player name.
+
+    private final long[] times; // Stage time of each event (nanoseconds, in whole microseconds).
+
+    private final byte[] events; // The move and MONSTERS_MOVE flag of each event.
+
+    private final int eventCount; // Number of events.
+
+    /** Reads a replay file.
+     *
+     * @param file The replay file.
+     * @return The replay.
+     * @throws IOException If the file can't be read or isn't a replay file.
+     */
+    public static Replay read(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (buffer.getInt() != ReplayRecorder.MAGIC) {
+                throw new IOException(file + " is not a replay file.");
+            }
+            int version = buffer.get();
+            if (version != ReplayRecorder.VERSION) {
+                throw new IOException(file + " has an unknown replay version " + version + ".");
+            }
+            int difficulty = buffer.get();
+            if (difficulty < 0 || difficulty >= StageEngine.Difficulty.values().length) {
+                throw new IOException(file + " has an unknown stage difficulty.");
+            }
+            boolean realTime = (buffer.get() & ReplayRecorder.REAL_TIME) != 0;
+            long seed = buffer.getLong();
+            byte[] name = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(name);
+            return new Replay(StageEngine.Difficulty.values()[difficulty], realTime, seed,
+                new String(name, StandardCharsets.UTF_8), buffer);
+        } catch (BufferUnderflowException e) {
+            throw new IOException(file + " has an incomplete header.");
+        }
+    }
+
+    /** Creates a replay from the header and reads the events after it.
+     *
+     * @param difficulty The stage difficulty.
+     * @param realTime Whether the real-time mode was played.
+     * @param seed The seed of the stage map.
+     * @param playerName The inputted player name.
+     * @param buffer The events.
+     * @throws IOException If an event has an unknown move.
+     */
+    private Replay(StageEngine.Difficulty difficulty, boolean realTime, long seed,
+        String playerName, ByteBuffer buffer) throws IOException {
+        this.difficulty = difficulty;
+        this.realTime = realTime;
+        this.seed = seed;
+        this.playerName = playerName;
+
+        // Every event takes at least 2 bytes.
+        long[] readTimes = new long[buffer.remaining() / 2];
+        byte[] readEvents = new byte[readTimes.length];
+        int count = 0;
+        long micros = 0;
+        while (buffer.hasRemaining()) {
+            int event = buffer.get() & 0xFF;
+            int move = event & ~ReplayRecorder.MONSTERS_MOVE;
+            if (move > MOVES.length) {
+                throw new IOException("Corrupt replay: unknown move in event " + count + ".");
+            }
+            long delta = 0;
+            int shift = 0;
+            boolean complete = false;
+            while (buffer.hasRemaining() && shift < Long.SIZE) {
+                int b = buffer.get();
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+                if ((b & 0x80) == 0) {
+                    complete = true;
+                    break;
+                }
+            }
+            if (!complete) {
+                break; // The last event was only partly written.
+            }
+            micros += delta;
+            readTimes[count] = micros * 1000;
+            readEvents[count] = (byte) event;
+            count++;
+        }
+        this.times = Arrays.copyOf(readTimes, count);
+        this.events = Arrays.copyOf(readEvents, count);
+        this.eventCount = count;
+    }
+
+    /** Returns the stage difficulty.
+     *
+     * @return The stage difficulty.
+     */
+    public StageEngine.Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    /** Checks if the real-time mode was played.
+     *
+     * @return true if the monsters kept moving while the player waited, false otherwise.
+     */
+    public boolean isRealTime() {
+        return realTime;
+    }
+
+    /** Returns the seed of the stage map.
+     *
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /** Returns the inputted player name.
+     *
+     * @return The player name.
+     */
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    /** Returns the number of recorded events.
+     *
+     * @return The number of events.
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /** Returns the stage time of an event.
+     *
+     * @param k The number of the event.
+     * @return The stage time in nanoseconds.
+     */
+    public long getTime(int k) {
+        return times[k];
+    }
+
+    /** Creates the stage engine of the replay, with the recorded stage map and a clock which
+     *  starts at 0 and is moved to the time of each event by step.
+     *
+     * @return The stage engine.
+     */
+    public StageEngine createEngine() {
+        // The stage time starts at 0, when the stage map is generated.
+        return new StageEngine(StageConfig.forDifficulty(difficulty), seed, () -> 0);
+    }
+
+    /** Does the step of an event in the stage engine of the replay.
+     *
+     * @param engine The stage engine (see createEngine).
+     * @param k The number of the event.
+     */
+    public void step(StageEngine engine, int k) {
+        long time = times[k];
+        engine.setClock(() -> time);
+        int move = (events[k] & 0xFF) & ~ReplayRecorder.MONSTERS_MOVE;
+        engine.step(move == 0 ? null : MOVES[move - 1],
+            (events[k] & ReplayRecorder.MONSTERS_MOVE) != 0);
+    }
+
+    /** Plays the whole replay again, as fast as possible.
+     *
+     * @return The stage engine after the last event.
+     */
+    public StageEngine play() {
+        StageEngine engine = createEngine();
+        for (int k = 0; k < eventCount && !engine.isFinished(); k++) {
+            step(engine, k);
+        }
+        return engine;
+    }
+}
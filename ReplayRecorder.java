@@ -0,0 +1,157 @@
+// All imports needed to record a played stage.
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/** This records a played stage into a replay file while it is played, so the stage can be
+ *  played again without a display (see Replay and ReplayRunner). The stage engine is seeded
+ *  (see StageEngine.generateMap), so the seed and the steps of the game loop describe the
+ *  whole game. The replay file contains:
+ *  - A header with MAGIC, VERSION, the stage difficulty, whether the real-time mode was played,
+ *    the seed and the player name (a short with the length and then the UTF-8 bytes).
+ *  - One event for every step of the game loop where something happened: a byte with the move
+ *    of the player (0 for no move, or 1 + the order of the move enum) and MONSTERS_MOVE if the
+ *    monsters moved, followed by the time since the previous event in microseconds (a varint
+ *    of 7 bits per byte, where the highest bit tells that another byte follows).
+ *  The time of an event is the stage time after its step, so the event which finishes
+ *  the stage has the finished stage time (which is registered in the leaderboard).
+ *  Most events take 3 bytes. The events are written by the simulation thread of the game loop,
+ *  and the file is closed once the game loop is stopped.
+ *  Only the newest MAX_REPLAYS replay files are kept in the folder.
+ */
+public class ReplayRecorder implements Closeable {
+
+    static final int MAGIC = 0x45534352; // "ESCR", the start of a replay file.
+
+    static final int VERSION = 3; // Version of the file format (monsters move in two phases).
+
+    static final int REAL_TIME = 1; // Flag in the header if the real-time mode was played.
+
+    static final int MONSTERS_MOVE = 0x08; // Flag in an event if the monsters moved.
+
+    static final int MAX_REPLAYS = 100; // Number of replay files kept in the folder.
+
+    private final Path file; // The replay file.
+
+    private final DataOutputStream out; // Writes to the replay file.
+
+    private long previousMicros; // Stage time of the previous event (microseconds).
+
+    private IOException failure; // The failed write, after which nothing is written anymore.
+
+    /** Creates a replay file for the stage map which was just generated, and writes its header.
+     *  The file is named after the stage difficulty and the time it was created.
+     *  The oldest replay files are deleted, so the folder keeps at most MAX_REPLAYS files.
+     *
+     * @param directory The folder of the replay files, which is created if needed.
+     * @param engine The stage which is played.
+     * @param playerName The inputted player name.
+     * @param realTime Whether the real-time mode is played.
+     * @throws IOException If the replay file can't be created.
+     */
+    public ReplayRecorder(Path directory, StageEngine engine, String playerName,
+        boolean realTime) throws IOException {
+        Files.createDirectories(directory);
+        deleteOldReplays(directory, MAX_REPLAYS - 1);
+        String difficulty = engine.getDifficulty().name().toLowerCase(Locale.ROOT);
+        this.file = directory.resolve(difficulty + "-" + System.currentTimeMillis() + ".replay");
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+
+        byte[] name = (playerName == null ? "" : playerName).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(engine.getDifficulty().ordinal());
+        out.writeByte(realTime ? REAL_TIME : 0);
+        out.writeLong(engine.getSeed());
+        out.writeShort(name.length);
+        out.write(name);
+    }
+
+    /** Deletes the oldest replay files in a folder (by the time they were last written),
+     *  until a number of replay files is left.
+     *
+     * @param directory The folder of the replay files.
+     * @param keep The number of replay files to keep.
+     * @throws IOException If the folder can't be read or a file can't be deleted.
+     */
+    static void deleteOldReplays(Path directory, int keep) throws IOException {
+        List<Path> replays = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.toString().endsWith(".replay")).forEach(replays::add);
+        }
+        if (replays.size() <= keep) {
+            return;
+        }
+        Map<Path, FileTime> times = new HashMap<>();
+        for (Path replay : replays) {
+            times.put(replay, Files.getLastModifiedTime(replay));
+        }
+        // Sort the replay files from the newest to the oldest.
+        replays.sort(Comparator.comparing((Path replay) -> times.get(replay)).reversed());
+        for (Path replay : replays.subList(keep, replays.size())) {
+            Files.deleteIfExists(replay);
+        }
+    }
+
+    /** Returns the replay file.
+     *
+     * @return The replay file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /** Records a step of the game loop, after the step was done.
+     *  If the replay file can't be written, the rest of the game isn't recorded,
+     *  and the failure is reported when the replay file is closed.
+     *
+     * @param elapsedNanos The stage time after the step (see StageEngine.getElapsedNanos).
+     * @param move The move of the player, or null if the player didn't move.
+     * @param monstersMove Whether the monsters moved in the step.
+     */
+    public void record(long elapsedNanos, StageEngine.Move move, boolean monstersMove) {
+        if (failure != null) {
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+        long delta = Math.max(0, micros - previousMicros);
+        previousMicros = Math.max(previousMicros, micros);
+        try {
+            out.writeByte((move == null ? 0 : move.ordinal() + 1) | (monstersMove ? MONSTERS_MOVE : 0));
+            while (delta >= 0x80) {
+                out.writeByte((int) (delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            out.writeByte((int) delta);
+        } catch (IOException e) {
+            failure = e; // Reported by close, on the thread which stops the game loop.
+        }
+    }
+
+    /** Writes the rest of the events and closes the replay file.
+     *
+     * @throws IOException If the replay file can't be written, also if an event couldn't be
+     *     written while the stage was played.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+        if (failure != null) {
+            throw new IOException("The replay " + file.getFileName() + " is incomplete: "
+                + failure.getMessage(), failure);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+// All imports needed to play replay files again without a display.
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/** This plays recorded stages again without a display and without waiting (see Replay),
+ *  for example to check a finished stage time in the leaderboard or to find a slow step.
+ *  For each replay file, it prints the player, the seed, how the stage ended with its stage time,
+ *  how long the replay took compared to the recorded game, and the slowest step of the replay.
+ *  Run it with the replay files or folders as arguments, where the folder 'escapade-replays'
+ *  is used if there are no arguments:
+ *  java ReplayRunner [replay files or folders]
+ */
+public class ReplayRunner {
+
+    private ReplayRunner() {
+        // Only the main method.
+    }
+
+    /** Plays the replay files again.
+     *
+     * @param args The replay files or folders with replay files.
+     * @throws IOException If a folder can't be read.
+     */
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args.length == 0 ? new String[] {GameStage.REPLAY_FOLDER} : args) {
+            Path path = Path.of(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> children = Files.list(path)) {
+                    children.filter(file -> file.toString().endsWith(".replay"))
+                        .sorted().forEach(files::add);
+                }
+            } else if (Files.exists(path)) {
+                files.add(path);
+            } else {
+                System.out.println(arg + ": no replay file or folder");
+            }
+        }
+        for (Path file : files) {
+            try {
+                System.out.println(file.getFileName() + ": " + run(Replay.read(file)));
+            } catch (IOException e) {
+                System.out.println(file.getFileName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /** Plays a replay again, where the time of every step is measured.
+     *
+     * @param replay The replay.
+     * @return A line with the results of the replay.
+     */
+    static String run(Replay replay) {
+        long start = System.nanoTime();
+        StageEngine engine = replay.createEngine();
+        long slowestStep = 0;
+        int slowestEvent = -1;
+        int steps = 0;
+        for (int k = 0; k < replay.getEventCount() && !engine.isFinished(); k++) {
+            long stepStart = System.nanoTime();
+            replay.step(engine, k);
+            long stepTime = System.nanoTime() - stepStart;
+            if (stepTime > slowestStep) {
+                slowestStep = stepTime;
+                slowestEvent = k;
+            }
+            steps++;
+        }
+        long replayTime = System.nanoTime() - start;
+
+        StringBuilder line = new StringBuilder();
+        line.append(replay.getPlayerName()).append(", ").append(replay.getDifficulty())
+            .append(replay.isRealTime() ? " (real-time)" : "")
+            .append(", seed ").append(replay.getSeed()).append(", ")
+            .append(steps).append(" of ").append(replay.getEventCount()).append(" steps, ");
+        if (!engine.isFinished()) {
+            line.append("not finished");
+        } else if (engine.getPlayer().isDead()) {
+            line.append("died after ").append(GameWindow.formatTime(engine.getFinishTime()));
+        } else {
+            line.append("reached the goal in ").append(GameWindow.formatTime(engine.getFinishTime()));
+        }
+        long recordedTime = steps == 0 ? 0 : replay.getTime(steps - 1);
+        line.append(String.format(", replayed in %.3f ms", replayTime / 1e6));
+        if (replayTime > 0 && recordedTime > 0) {
+            line.append(String.format(" (%.0fx real time)", (double) recordedTime / replayTime));
+        }
+        if (slowestEvent >= 0) {
+            line.append(String.format(", slowest step %.3f ms at %s", slowestStep / 1e6,
+                GameWindow.formatTime((int) (replay.getTime(slowestEvent) / 1_000_000))));
+        }
+        return line.toString();
+    }
+}
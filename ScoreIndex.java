@@ -0,0 +1,356 @@
+// All imports needed to rank the finished stage times of one stage difficulty on disk.
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/** This ranks every finished stage time of one stage difficulty in the score log, where:
+ *  - The index file keeps an entry for each finished stage time up to a record in the score log,
+ *    sorted from the lowest to the highest time. The index file is memory-mapped, so the
+ *    entries are read from the file when they are needed and are not loaded into memory.
+ *  - The finished stage times after the index file (the tail) are kept in memory, and are
+ *    merged into a new index file once the tail has grown to a part of the index file.
+ *  Each entry is the finished stage time and the record number in the score log in one long
+ *  (time * 2^32 + record), so entries with the same time are sorted in order of play,
+ *  and the player name is read from the score log through the record number.
+ *  A merge writes the next generation of the index file (the file name with ".1", ".2", ...
+ *  after it), instead of replacing the mapped index file, since a mapped file can't be replaced
+ *  or deleted on every system (Windows keeps it until the mapping is garbage collected).
+ *  An older generation is deleted when it can be, or otherwise when the game starts again.
+ */
+public class ScoreIndex {
+
+    private static final int INDEX_MAGIC = 0x45534349; // "ESCI", the start of an index file.
+
+    private static final int VERSION = 1; // Version of the file format (times in milliseconds).
+
+    private static final int HEADER_SIZE = 32; // Bytes before the first entry.
+
+    private static final int SEGMENT_ENTRIES = 1 << 27; // Entries per mapped part (1 GB).
+
+    static final int MIN_MERGE = 1024; // The tail is merged from this number of entries.
+
+    static final int MERGE_SHIFT = 6; // The tail is merged at 1/64 of the index file.
+
+    private final ScoreStore store; // The score log with the player names.
+
+    private final Path indexFile; // The file name of the index file without its generation.
+
+    private long generation; // Generation of the mapped index file (0 is the file name itself).
+
+    private LongBuffer[] segments = new LongBuffer[0]; // The mapped parts of the index file.
+
+    private long count; // Number of entries in the index file.
+
+    private long coveredRecords; // Number of records in the score log which the file covers.
+
+    private long[] tail = new long[64]; // Entries after the index file, sorted when needed.
+
+    private int tailCount; // Number of entries in the tail.
+
+    private boolean tailSorted = true; // Whether the tail is sorted.
+
+    /** Opens the index file of a stage difficulty, where a missing or damaged index file
+     *  covers no records (so every record in the score log is added to the tail).
+     *
+     * @param store The score log with the player names.
+     * @param indexFile The index file.
+     * @throws IOException If the index file can't be read.
+     */
+    ScoreIndex(ScoreStore store, Path indexFile) throws IOException {
+        this.store = store;
+        this.indexFile = indexFile;
+
+        // Find the generations of the index file, where unfinished merges are deleted.
+        String name = indexFile.getFileName().toString();
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> children = Files.list(indexFile.toAbsolutePath().getParent())) {
+            children.filter(file -> file.getFileName().toString().startsWith(name))
+                .forEach(files::add);
+        }
+        List<Long> generations = new ArrayList<>();
+        for (Path file : files) {
+            String suffix = file.getFileName().toString().substring(name.length());
+            if (suffix.isEmpty()) {
+                generations.add(0L);
+            } else if (suffix.endsWith(".new")) {
+                Files.deleteIfExists(file);
+            } else if (suffix.matches("\\.[0-9]{1,18}")) {
+                generations.add(Long.parseLong(suffix.substring(1)));
+            }
+        }
+
+        // Map the newest generation which is valid, and delete the other generations.
+        generations.sort(null);
+        boolean loaded = false;
+        for (int k = generations.size() - 1; k >= 0; k--) {
+            if (!loaded && load(generations.get(k))) {
+                loaded = true;
+                generation = generations.get(k);
+            } else {
+                deleteGeneration(generations.get(k));
+            }
+        }
+    }
+
+    /** Returns the file of a generation of the index file.
+     *
+     * @param fileGeneration The generation.
+     * @return The index file of the generation.
+     */
+    private Path generationFile(long fileGeneration) {
+        return fileGeneration == 0 ? indexFile
+            : indexFile.resolveSibling(indexFile.getFileName() + "." + fileGeneration);
+    }
+
+    /** Deletes a generation of the index file if it isn't used anymore. If it is still mapped
+     *  (see the class comment), it is deleted when the game starts again.
+     *
+     * @param fileGeneration The generation.
+     */
+    private void deleteGeneration(long fileGeneration) {
+        try {
+            Files.deleteIfExists(generationFile(fileGeneration));
+        } catch (IOException e) {
+            // The file is still mapped, so it is deleted when the index is opened again.
+        }
+    }
+
+    /** Maps a generation of the index file if its header is valid and it doesn't cover
+     *  more records than there are in the score log.
+     *
+     * @param fileGeneration The generation.
+     * @return true if the index file was mapped, false if it isn't valid.
+     * @throws IOException If the index file can't be read.
+     */
+    private boolean load(long fileGeneration) throws IOException {
+        try (FileChannel channel = FileChannel.open(generationFile(fileGeneration),
+            StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading until the whole header is in the buffer.
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != INDEX_MAGIC
+                || header.getInt() != VERSION) {
+                return false;
+            }
+            long records = header.getLong();
+            long entries = header.getLong();
+            if (records < 0 || records > store.getRecordCount() || entries < 0
+                || entries > records || channel.size() != HEADER_SIZE + entries * Long.BYTES) {
+                return false;
+            }
+
+            // The mapping stays valid after the channel is closed.
+            segments = map(channel, entries);
+            count = entries;
+            coveredRecords = records;
+            return true;
+        }
+    }
+
+    /** Maps the entries of an index file in parts of SEGMENT_ENTRIES entries.
+     *
+     * @param channel The index file.
+     * @param entries Number of entries in the index file.
+     * @return The mapped parts.
+     * @throws IOException If the index file can't be mapped.
+     */
+    private static LongBuffer[] map(FileChannel channel, long entries) throws IOException {
+        LongBuffer[] mapped = new LongBuffer[(int) ((entries + SEGMENT_ENTRIES - 1)
+            / SEGMENT_ENTRIES)];
+        for (int k = 0; k < mapped.length; k++) {
+            long first = (long) k * SEGMENT_ENTRIES;
+            long size = Math.min(SEGMENT_ENTRIES, entries - first) * Long.BYTES;
+            mapped[k] = channel.map(FileChannel.MapMode.READ_ONLY,
+                HEADER_SIZE + first * Long.BYTES, size).asLongBuffer();
+        }
+        return mapped;
+    }
+
+    /** Returns the number of records in the score log which the index file covers.
+     *
+     * @return The number of covered records.
+     */
+    long getCoveredRecords() {
+        return coveredRecords;
+    }
+
+    /** Adds a finished stage time after the index file to the tail.
+     *
+     * @param record The record number in the score log.
+     * @param time The finished stage time.
+     */
+    void add(long record, int time) {
+        if (tailCount == tail.length) {
+            tail = Arrays.copyOf(tail, tailCount * 2);
+        }
+        long entry = ((long) time << 32) | record;
+        tailSorted = tailSorted && (tailCount == 0 || tail[tailCount - 1] < entry);
+        tail[tailCount++] = entry;
+    }
+
+    /** Checks if the tail has grown enough to be merged into a new index file.
+     *
+     * @return true if the tail should be merged, false otherwise.
+     */
+    boolean needsMerge() {
+        return tailCount >= Math.max(MIN_MERGE, count >> MERGE_SHIFT);
+    }
+
+    /** Writes the next generation of the index file with the entries of the index file and
+     *  the tail, which is used instead of the previous generation at once.
+     *  Both are sorted, so they are merged in one pass without sorting the index file.
+     *
+     * @param records Number of records in the score log, which the new index file covers.
+     * @throws IOException If the new index file can't be written.
+     */
+    void merge(long records) throws IOException {
+        sortTail();
+        long nextGeneration = generation + 1;
+        Path nextFile = generationFile(nextGeneration);
+        Path newIndex = nextFile.resolveSibling(nextFile.getFileName() + ".new");
+        long entries = count + tailCount;
+        try (FileChannel channel = FileChannel.open(newIndex, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            buffer.putInt(INDEX_MAGIC).putInt(VERSION).putLong(records).putLong(entries);
+            buffer.position(HEADER_SIZE);
+
+            // Take the lowest entry of the index file or the tail until both are written.
+            long indexed = 0;
+            int tailed = 0;
+            while (indexed < count || tailed < tailCount) {
+                long entry;
+                if (tailed == tailCount
+                    || (indexed < count && entryAt(indexed) < tail[tailed])) {
+                    entry = entryAt(indexed++);
+                } else {
+                    entry = tail[tailed++];
+                }
+                if (!buffer.hasRemaining()) {
+                    writeFully(channel, buffer);
+                }
+                buffer.putLong(entry);
+            }
+            writeFully(channel, buffer);
+            channel.force(true);
+        }
+
+        // The next generation only counts once it is complete, and no mapped file is replaced.
+        Files.move(newIndex, nextFile, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel channel = FileChannel.open(nextFile, StandardOpenOption.READ)) {
+            segments = map(channel, entries);
+        }
+        deleteGeneration(generation);
+        generation = nextGeneration;
+        count = entries;
+        coveredRecords = records;
+        tail = new long[64];
+        tailCount = 0;
+        tailSorted = true;
+    }
+
+    /** Writes the buffer to a file and clears it.
+     *
+     * @param channel The file.
+     * @param buffer The buffer to write.
+     * @throws IOException If the file can't be written.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /** Returns the number of finished stage times of the stage difficulty.
+     *
+     * @return The number of ranked times.
+     */
+    public long size() {
+        return count + tailCount;
+    }
+
+    /** Returns the finished stage time of a rank.
+     *
+     * @param rank The rank, where 0 is the lowest time.
+     * @return The finished stage time.
+     */
+    public int getTime(long rank) {
+        return (int) (entry(rank) >>> 32);
+    }
+
+    /** Returns the player name of a rank, which is read from the score log.
+     *
+     * @param rank The rank, where 0 is the lowest time.
+     * @return The inputted player name.
+     */
+    public String getName(long rank) {
+        return store.readName(entry(rank) & 0xFFFFFFFFL);
+    }
+
+    /** Returns the entry of a rank in the index file and the tail together.
+     *  The rank is found with a binary search on the number of entries taken from
+     *  the index file, so the entries before the rank are never read.
+     *
+     * @param rank The rank, where 0 is the lowest time.
+     * @return The entry.
+     */
+    private long entry(long rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " of " + size());
+        }
+        sortTail();
+
+        // Find the number of entries from the index file among the lowest rank + 1 entries.
+        long low = Math.max(0, rank + 1 - tailCount);
+        long high = Math.min(rank + 1, count);
+        while (low < high) {
+            long taken = (low + high) >>> 1;
+            if (entryAt(taken) < tail[(int) (rank - taken)]) {
+                low = taken + 1;
+            } else {
+                high = taken;
+            }
+        }
+        int tailTaken = (int) (rank + 1 - low);
+        if (low == 0) {
+            return tail[tailTaken - 1];
+        }
+        if (tailTaken == 0) {
+            return entryAt(low - 1);
+        }
+        return Math.max(entryAt(low - 1), tail[tailTaken - 1]);
+    }
+
+    /** Returns an entry of the index file.
+     *
+     * @param position The position in the index file.
+     * @return The entry.
+     */
+    private long entryAt(long position) {
+        return segments[(int) (position / SEGMENT_ENTRIES)].get((int) (position % SEGMENT_ENTRIES));
+    }
+
+    /** Sorts the tail if entries were added out of order.
+     */
+    private void sortTail() {
+        if (!tailSorted) {
+            Arrays.sort(tail, 0, tailCount);
+            tailSorted = true;
+        }
+    }
+}
@@ -0,0 +1,492 @@
+// All imports needed to keep the finished stage times on disk.
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/** This keeps the finished stage times on disk, so the leaderboards are kept after
+ *  the game is closed. The scores are kept in these files:
+ *  - The score log, where every finished stage time is added at the end as a record of
+ *    48 bytes (stage difficulty, finished stage time in milliseconds, player name).
+ *    Records are never changed afterwards, so if the game stops while a record is written,
+ *    only this record is lost.
+ *    The score log is only forced to disk when the snapshot is written and when the score
+ *    files are closed, so adding a finished stage time on the Event Dispatch Thread doesn't
+ *    wait for the disk. The added records are in the file as soon as they are written,
+ *    so they are kept if the game stops; only if the computer itself stops (a power cut),
+ *    the records since the last snapshot (at most COMPACT_EVERY) can be lost.
+ *  - The snapshot, which is written again after every COMPACT_EVERY records and keeps
+ *    the leaderboards up to a record in the score log.
+ *  - An index file for each stage difficulty, which ranks every finished stage time
+ *    (see ScoreIndex).
+ *  When the game starts, the snapshot is loaded and only the records after the snapshot and
+ *  the index files are read from the score log, so starting the game doesn't get slower when
+ *  more games are played. The score log is memory-mapped, so records are read from the file
+ *  when they are needed instead of being loaded into memory.
+ */
+public class ScoreStore implements Closeable {
+
+    static final int RECORD_SIZE = 48; // Bytes of a record (and of the header of the score log).
+
+    static final int MAX_NAME_LENGTH = 20; // Characters of the player name in a record.
+
+    static final int TIME_OFFSET = 4; // Position of the finished stage time in a record.
+
+    static final int NAME_OFFSET = 8; // Position of the player name in a record.
+
+    static final int COMPACT_EVERY = 100; // Records added before the snapshot is written again.
+
+    static final long MAX_RECORDS = 1L << 32; // Records in the score log (see ScoreIndex).
+
+    private static final int BULK_RECORDS = 1 << 14; // Records written at once by appendAll.
+
+    private static final int SEGMENT_RECORDS = 1 << 24; // Records per mapped part (768 MB).
+
+    private static final int LOG_MAGIC = 0x4553434C; // "ESCL", the start of the score log.
+
+    private static final int SNAPSHOT_MAGIC = 0x45534353; // "ESCS", the start of the snapshot.
+
+    private static final int VERSION = 1; // Version of the file formats (times in milliseconds).
+
+    private final Path snapshotFile; // The file with the snapshot.
+
+    private final FileChannel log; // The score log, which is kept open to add records.
+
+    private final Leaderboard[] leaderboards; // Leaderboards indexed by difficulty order.
+
+    private final ScoreIndex[] indexes; // Ranked times indexed by difficulty order.
+
+    private MappedByteBuffer[] logSegments = new MappedByteBuffer[0]; // Mapped score log.
+
+    private long mappedRecords; // Number of records in the mapped parts of the score log.
+
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE); // Reused for adding.
+
+    private long recordCount; // Number of records in the score log.
+
+    private long snapshotRecords; // Number of records in the score log kept in the snapshot.
+
+    /** Opens the score files in a directory (which is created if needed)
+     *  and loads the finished stage times into the leaderboards.
+     *
+     * @param directory The directory of the score files.
+     * @param leaderboards Empty leaderboards indexed by the order of the difficulties,
+     *     which are replaced by the loaded leaderboards.
+     * @throws IOException If the score files can't be read or written.
+     */
+    public ScoreStore(Path directory, Leaderboard[] leaderboards) throws IOException {
+        this.leaderboards = leaderboards;
+        Files.createDirectories(directory);
+        this.snapshotFile = directory.resolve("scores.snapshot");
+        this.log = FileChannel.open(directory.resolve("scores.log"), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.indexes = new ScoreIndex[leaderboards.length];
+
+        try {
+            openLog();
+            loadSnapshot();
+
+            long from = snapshotRecords;
+            for (StageEngine.Difficulty difficulty : StageEngine.Difficulty.values()) {
+                ScoreIndex index = new ScoreIndex(this, directory.resolve("scores-"
+                    + difficulty.name().toLowerCase(Locale.ROOT) + ".index"));
+                indexes[difficulty.ordinal()] = index;
+                from = Math.min(from, index.getCoveredRecords());
+            }
+
+            // Read the records which aren't in the snapshot or an index file.
+            mapLog();
+            readLog(from);
+            for (ScoreIndex index : indexes) {
+                if (index.needsMerge()) {
+                    index.merge(recordCount);
+                }
+            }
+            if (recordCount - snapshotRecords >= COMPACT_EVERY) {
+                compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+    }
+
+    /** Checks the header of the score log (or writes it for a new score log),
+     *  and removes a record at the end which was only partly written.
+     *
+     * @throws IOException If the file isn't a score log or can't be read.
+     */
+    private void openLog() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE);
+        if (log.size() < RECORD_SIZE) {
+            // A new score log starts with a header.
+            header.putInt(LOG_MAGIC).putInt(VERSION).clear();
+            log.truncate(0);
+            writeFully(log, header, 0);
+            log.force(true);
+        } else {
+            readFully(log, header, 0);
+            header.flip();
+            if (header.getInt() != LOG_MAGIC || header.getInt() != VERSION) {
+                throw new IOException("The score log has an unknown format.");
+            }
+        }
+
+        // A record which was only partly written (the game stopped while writing) is removed.
+        recordCount = (log.size() - RECORD_SIZE) / RECORD_SIZE;
+        log.truncate(RECORD_SIZE + recordCount * RECORD_SIZE);
+    }
+
+    /** Loads the leaderboards from the snapshot, if there is a valid snapshot.
+     *  Otherwise, the leaderboards stay empty and the whole score log is read.
+     *
+     * @throws IOException If the snapshot exists but can't be read.
+     */
+    private void loadSnapshot() throws IOException {
+        snapshotRecords = 0;
+        if (!Files.exists(snapshotFile)) {
+            return;
+        }
+
+        ByteBuffer snapshot;
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            snapshot = ByteBuffer.allocate((int) channel.size());
+            while (snapshot.hasRemaining() && channel.read(snapshot) >= 0) {
+                // Keep reading until the whole snapshot is in the buffer.
+            }
+            snapshot.flip();
+        }
+
+        // The snapshot is only used if it is complete and belongs to this score log.
+        Leaderboard[] loaded = new Leaderboard[leaderboards.length];
+        long records;
+        try {
+            if (snapshot.getInt() != SNAPSHOT_MAGIC || snapshot.getInt() != VERSION) {
+                return;
+            }
+            records = snapshot.getLong();
+            for (int d = 0; d < leaderboards.length; d++) {
+                int size = snapshot.getInt();
+                int end = snapshot.position() + size;
+                loaded[d] = new Leaderboard(leaderboards[d].capacity());
+                loaded[d].readSnapshot(snapshot.slice(snapshot.position(), size));
+                snapshot.position(end);
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(snapshot.array(), 0, snapshot.position());
+            if ((int) checksum.getValue() != snapshot.getInt() || records > recordCount) {
+                return;
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException
+            | IndexOutOfBoundsException e) {
+            return; // The snapshot is incomplete, so the whole score log is read instead.
+        }
+
+        System.arraycopy(loaded, 0, leaderboards, 0, loaded.length);
+        snapshotRecords = records;
+    }
+
+    /** Maps the score log in parts of SEGMENT_RECORDS records, where only the last part
+     *  is mapped again when records were added.
+     *
+     * @throws IOException If the score log can't be mapped.
+     */
+    private void mapLog() throws IOException {
+        int segmentCount = (int) ((recordCount + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS);
+        MappedByteBuffer[] segments = Arrays.copyOf(logSegments, segmentCount);
+        for (int k = (int) (mappedRecords / SEGMENT_RECORDS); k < segmentCount; k++) {
+            long first = (long) k * SEGMENT_RECORDS;
+            long records = Math.min(SEGMENT_RECORDS, recordCount - first);
+            segments[k] = log.map(FileChannel.MapMode.READ_ONLY,
+                RECORD_SIZE + first * RECORD_SIZE, records * RECORD_SIZE);
+        }
+        logSegments = segments;
+        mappedRecords = recordCount;
+    }
+
+    /** Returns the mapped part of the score log with a record, where the record must be
+     *  at most the number of records.
+     *
+     * @param record The record number.
+     * @return The mapped part, where the record is at (record % SEGMENT_RECORDS) * RECORD_SIZE.
+     */
+    private ByteBuffer segmentOf(long record) {
+        if (record >= mappedRecords) {
+            try {
+                mapLog();
+            } catch (IOException e) {
+                throw new IllegalStateException("The score log can't be mapped.", e);
+            }
+        }
+        return logSegments[(int) (record / SEGMENT_RECORDS)];
+    }
+
+    /** Reads the records in the score log from a record onwards, where each finished stage time
+     *  is added to the leaderboard if it isn't in the snapshot, and to the index
+     *  if it isn't in the index file.
+     *
+     * @param from The first record to read.
+     * @throws IOException If a record is damaged.
+     */
+    private void readLog(long from) throws IOException {
+        for (long record = from; record < recordCount; record++) {
+            ByteBuffer segment = segmentOf(record);
+            int start = (int) (record % SEGMENT_RECORDS) * RECORD_SIZE;
+            int difficulty = segment.get(start);
+            int nameLength = segment.get(start + 1);
+            if (difficulty < 0 || difficulty >= leaderboards.length
+                || nameLength < 0 || nameLength > MAX_NAME_LENGTH) {
+                throw new IOException("The score log has a damaged record " + record + ".");
+            }
+            int time = segment.getInt(start + TIME_OFFSET);
+            if (record >= snapshotRecords) {
+                leaderboards[difficulty].add(readName(record), time);
+            }
+            if (record >= indexes[difficulty].getCoveredRecords()) {
+                indexes[difficulty].add(record, time);
+            }
+        }
+    }
+
+    /** Reads the player name of a record from the mapped score log.
+     *
+     * @param record The record number.
+     * @return The inputted player name.
+     */
+    String readName(long record) {
+        ByteBuffer segment = segmentOf(record);
+        int start = (int) (record % SEGMENT_RECORDS) * RECORD_SIZE;
+        char[] name = new char[segment.get(start + 1)];
+        for (int k = 0; k < name.length; k++) {
+            name[k] = segment.getChar(start + NAME_OFFSET + k * Character.BYTES);
+        }
+        return new String(name);
+    }
+
+    /** Adds a finished stage time at the end of the score log, where the snapshot is
+     *  written again after every COMPACT_EVERY records.
+     *  The finished stage time must already be added to the leaderboard.
+     *
+     * @param difficulty The stage with the corresponding difficulty.
+     * @param playerName The inputted player name.
+     * @param time The finished stage time.
+     * @throws IOException If the score log can't be written.
+     */
+    public void append(StageEngine.Difficulty difficulty, String playerName, int time)
+        throws IOException {
+        checkName(playerName);
+        if (recordCount == MAX_RECORDS) {
+            throw new IOException("The score log is full.");
+        }
+        record.clear();
+        putRecord(record, difficulty, playerName, time);
+        record.flip();
+
+        // The record is in the file before it counts, so a crash loses at most this record.
+        writeFully(log, record, RECORD_SIZE + recordCount * RECORD_SIZE);
+        recordCount++;
+
+        ScoreIndex index = indexes[difficulty.ordinal()];
+        index.add(recordCount - 1, time);
+        if (index.needsMerge()) {
+            index.merge(recordCount);
+        }
+
+        if (recordCount - snapshotRecords >= COMPACT_EVERY) {
+            compact();
+        }
+    }
+
+    /** Adds many finished stage times of a stage difficulty at the end of the score log at once,
+     *  for example to import scores. The records are written in parts of BULK_RECORDS records,
+     *  and the snapshot is only written once at the end. The index file is merged at the same
+     *  records as with append, so the score files are the same as after calling append for
+     *  each finished stage time.
+     *  The finished stage times must already be added to the leaderboard.
+     *
+     * @param difficulty The stage with the corresponding difficulty.
+     * @param playerNames The inputted player name of each finished stage time.
+     * @param times The finished stage times.
+     * @throws IOException If the score log can't be written.
+     */
+    public void appendAll(StageEngine.Difficulty difficulty, String[] playerNames, int[] times)
+        throws IOException {
+        if (playerNames.length != times.length) {
+            throw new IllegalArgumentException("Every finished stage time needs a player name.");
+        }
+        for (String playerName : playerNames) {
+            checkName(playerName);
+        }
+        if (recordCount + times.length > MAX_RECORDS) {
+            throw new IOException("The score log is full.");
+        }
+
+        ScoreIndex index = indexes[difficulty.ordinal()];
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * Math.min(times.length, BULK_RECORDS));
+        for (int first = 0; first < times.length; first += BULK_RECORDS) {
+            int last = Math.min(times.length, first + BULK_RECORDS);
+            buffer.clear();
+            for (int k = first; k < last; k++) {
+                putRecord(buffer, difficulty, playerNames[k], times[k]);
+            }
+            buffer.flip();
+            writeFully(log, buffer, RECORD_SIZE + recordCount * RECORD_SIZE);
+
+            for (int k = first; k < last; k++) {
+                recordCount++;
+                index.add(recordCount - 1, times[k]);
+                if (index.needsMerge()) {
+                    index.merge(recordCount);
+                }
+            }
+        }
+
+        if (recordCount - snapshotRecords >= COMPACT_EVERY) {
+            compact();
+        }
+    }
+
+    /** Checks if a player name fits in a record.
+     *
+     * @param playerName The inputted player name.
+     * @throws IllegalArgumentException If the player name is too long.
+     */
+    private static void checkName(String playerName) {
+        if (playerName.length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Player name is too long to be saved.");
+        }
+    }
+
+    /** Puts a record at the position of a buffer, after which the position is at the end
+     *  of the record. A record is the difficulty, the length of the name, the time and the name
+     *  (the player name has at most 20 characters, which always fit in 2 bytes each).
+     *
+     * @param buffer The buffer, which must have room for the record.
+     * @param difficulty The stage with the corresponding difficulty.
+     * @param playerName The inputted player name.
+     * @param time The finished stage time.
+     */
+    private static void putRecord(ByteBuffer buffer, StageEngine.Difficulty difficulty,
+        String playerName, int time) {
+        int start = buffer.position();
+        Arrays.fill(buffer.array(), start, start + RECORD_SIZE, (byte) 0);
+        buffer.put(start, (byte) difficulty.ordinal());
+        buffer.put(start + 1, (byte) playerName.length());
+        buffer.putInt(start + TIME_OFFSET, time);
+        for (int k = 0; k < playerName.length(); k++) {
+            buffer.putChar(start + NAME_OFFSET + k * Character.BYTES, playerName.charAt(k));
+        }
+        buffer.position(start + RECORD_SIZE);
+    }
+
+    /** Writes the snapshot of the leaderboards, which replaces the previous snapshot at once,
+     *  so there is always one complete snapshot. The records in the snapshot are forced to
+     *  disk first.
+     *
+     * @throws IOException If the snapshot can't be written.
+     */
+    public void compact() throws IOException {
+        log.force(false);
+
+        int size = 2 * Integer.BYTES + Long.BYTES + Integer.BYTES; // Header and checksum.
+        for (Leaderboard leaderboard : leaderboards) {
+            size += Integer.BYTES + leaderboard.snapshotSize();
+        }
+
+        ByteBuffer snapshot = ByteBuffer.allocate(size);
+        snapshot.putInt(SNAPSHOT_MAGIC).putInt(VERSION).putLong(recordCount);
+        for (Leaderboard leaderboard : leaderboards) {
+            snapshot.putInt(leaderboard.snapshotSize());
+            leaderboard.writeSnapshot(snapshot);
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(snapshot.array(), 0, snapshot.position());
+        snapshot.putInt((int) checksum.getValue());
+        snapshot.flip();
+
+        // Write a new file first, and then replace the previous snapshot with it.
+        Path newSnapshot = snapshotFile.resolveSibling("scores.snapshot.new");
+        try (FileChannel channel = FileChannel.open(newSnapshot, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+            channel.force(true);
+        }
+        Files.move(newSnapshot, snapshotFile, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        snapshotRecords = recordCount;
+    }
+
+    /** Returns the ranking of every finished stage time of a stage difficulty,
+     *  which is read from the index file and the score log.
+     *
+     * @param difficulty The stage with the corresponding difficulty.
+     * @return The ranked finished stage times.
+     */
+    public ScoreIndex getIndex(StageEngine.Difficulty difficulty) {
+        return indexes[difficulty.ordinal()];
+    }
+
+    /** Returns the number of finished stage times in the score log.
+     *
+     * @return The number of records.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /** Forces the added records to disk and closes the score log.
+     *
+     * @throws IOException If the score log can't be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            log.force(false);
+        } finally {
+            log.close();
+        }
+    }
+
+    /** Reads from a score log until the buffer is full.
+     *
+     * @param channel The score log.
+     * @param buffer The buffer to read into.
+     * @param position The position in the score log.
+     * @throws IOException If the score log ends before the buffer is full.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+        throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("The score log ended unexpectedly.");
+            }
+            position += read;
+        }
+    }
+
+    /** Writes the whole buffer to a score log.
+     *
+     * @param channel The score log.
+     * @param buffer The buffer to write.
+     * @param position The position in the score log.
+     * @throws IOException If the score log can't be written.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+        throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+// All imports needed to hand the snapshots of a stage to the game stage.
+import java.util.concurrent.atomic.AtomicReference;
+
+/** This hands the snapshots of a stage from the thread which runs the stage engine
+ *  (the simulation thread of the game loop) to the game stage on the Event Dispatch Thread,
+ *  without locks and without creating a new snapshot for every step. There are three snapshots:
+ *  - The back snapshot, which only the simulation thread writes.
+ *  - The ready snapshot, which is published but not yet taken by the game stage.
+ *  - The front snapshot, which the game stage draws.
+ *  The simulation thread publishes the back snapshot by putting it in ready (one atomic swap),
+ *  and the game stage takes it and releases its previous front snapshot to be written again.
+ *  At most one snapshot is ready at a time, so the game stage sees every published snapshot
+ *  and only has to redraw the cells which are listed as changed in it. Until the game stage
+ *  has taken the ready snapshot, the changes of the next steps are collected and published
+ *  together in the next snapshot.
+ *  A released snapshot is a few snapshots behind, so only the cells which changed since then
+ *  are copied into it again (not the whole stage map).
+ */
+public class SnapshotExchange implements StageEngine.Listener {
+
+    private final StageEngine engine; // The stage of the snapshots.
+
+    private final TileGrid grid; // The cells of the stage map in the stage engine.
+
+    // The published snapshot which the game stage hasn't taken yet, or null.
+    private final AtomicReference<StageSnapshot> ready = new AtomicReference<>();
+
+    // The snapshot which the game stage released to be written again, or null.
+    private final AtomicReference<StageSnapshot> free = new AtomicReference<>();
+
+    /* Only used by the thread which runs the stage engine. */
+
+    private StageSnapshot back; // The snapshot which is written next.
+
+    private StageSnapshot latest; // The last published snapshot.
+
+    private StageSnapshot beforeLatest; // The snapshot published before the last one.
+
+    private long sequence; // Number of the last published snapshot.
+
+    private final boolean[] pending; // Whether a cell changed since the last published snapshot.
+
+    private final int[] pendingCells; // The cells which changed since the last published snapshot.
+
+    private int pendingCount; // Number of cells in pendingCells.
+
+    private boolean pendingAll; // Whether a new stage map was generated since the last snapshot.
+
+    private boolean unpublished; // Whether the stage changed since the last published snapshot.
+
+    /* Only used by the Event Dispatch Thread. */
+
+    private StageSnapshot front; // The snapshot which the game stage draws.
+
+    /** Creates the snapshots of a stage, which all start as a copy of the current stage,
+     *  and listens to the stage engine for its changes.
+     *
+     * @param engine The stage of the snapshots.
+     */
+    public SnapshotExchange(StageEngine engine) {
+        this.engine = engine;
+        this.grid = engine.getGrid();
+        this.pending = new boolean[grid.size()];
+        this.pendingCells = new int[grid.size()];
+
+        StageSnapshot[] snapshots = new StageSnapshot[3];
+        for (int k = 0; k < snapshots.length; k++) {
+            snapshots[k] = new StageSnapshot(grid.size());
+            snapshots[k].copyAll(grid);
+            snapshots[k].copyState(0, engine);
+        }
+        front = snapshots[0];
+        back = snapshots[1];
+        free.set(snapshots[2]);
+        engine.addListener(this);
+    }
+
+    /** Publishes the changes of the stage since the last published snapshot, if the game stage
+     *  has taken the last published snapshot. Otherwise, the changes are published in a later
+     *  call. This is called on the thread which runs the stage engine.
+     */
+    public void publish() {
+        if (!unpublished) {
+            return;
+        }
+        StageSnapshot next = free.getAndSet(null);
+        if (next == null) {
+            return; // The last published snapshot hasn't been taken yet.
+        }
+
+        // The back snapshot misses the changes of the snapshots published after it was written.
+        if (beforeLatest != null && beforeLatest.getSequence() > back.getSequence()) {
+            back.copyChanges(grid, beforeLatest);
+        }
+        if (latest != null && latest.getSequence() > back.getSequence()) {
+            back.copyChanges(grid, latest);
+        }
+        back.setChanges(pendingCells, pendingCount, pendingAll);
+        back.copyChanges(grid, back);
+        back.copyState(++sequence, engine);
+
+        // Publish the cells, the monsters and the player in one swap.
+        ready.set(back);
+        beforeLatest = latest;
+        latest = back;
+        back = next;
+
+        for (int k = 0; k < pendingCount; k++) {
+            pending[pendingCells[k]] = false;
+        }
+        pendingCount = 0;
+        pendingAll = false;
+        unpublished = false;
+    }
+
+    /** Takes the newest published snapshot, which becomes the front snapshot, and releases
+     *  the previous front snapshot. This is called on the Event Dispatch Thread.
+     *
+     * @return The taken snapshot, or null if no snapshot was published since the last take.
+     */
+    public StageSnapshot take() {
+        StageSnapshot fresh = ready.getAndSet(null);
+        if (fresh == null) {
+            return null;
+        }
+        free.set(front); // The previous front snapshot isn't read anymore.
+        front = fresh;
+        return fresh;
+    }
+
+    /** Returns the front snapshot, which the game stage draws.
+     *  This is called on the Event Dispatch Thread.
+     *
+     * @return The front snapshot.
+     */
+    public StageSnapshot getFront() {
+        return front;
+    }
+
+    /** Collects a changed cell for the next published snapshot.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    @Override
+    public void cellChanged(int row, int col) {
+        int cell = grid.cellAt(row, col);
+        if (!pending[cell]) {
+            pending[cell] = true;
+            pendingCells[pendingCount++] = cell;
+        }
+        unpublished = true;
+    }
+
+    /** Marks every cell as changed for the next published snapshot.
+     */
+    @Override
+    public void mapGenerated() {
+        pendingAll = true;
+        unpublished = true;
+    }
+
+    /** Marks the monsters and the player as changed for the next published snapshot.
+     */
+    @Override
+    public void ticked() {
+        unpublished = true;
+    }
+}
@@ -0,0 +1,179 @@
+/** This describes a stage before it is generated:
+ *  - The stage difficulty (which the finished stage times are registered under).
+ *  - The number of rows and columns in the stage map.
+ *  - The sampler with the weights of the game elements.
+ *  - How the stage map is generated.
+ *  - Whether the monsters of a tick are moved serially or in parallel.
+ *  The stages in the game window use the configuration of their difficulty (see forDifficulty),
+ *  but a stage can also be created with any dimensions and weights, for example to test
+ *  how the stage engine handles very large stage maps.
+ */
+public class StageConfig {
+
+    /** The largest number of cells in a stage map, since cells are numbered with an int
+     *  (row * colSize + col) and stored in one array.
+     */
+    public static final int MAX_CELLS = Integer.MAX_VALUE - 8;
+
+    private final StageEngine.Difficulty difficulty; // The stage difficulty.
+
+    private final int rowSize; // Number of rows in the stage map.
+
+    private final int colSize; // Number of columns in the stage map.
+
+    private final TileSampler sampler; // Picks the game elements according to their weights.
+
+    private final StageEngine.GenerationMode generationMode; // How the stage map is generated.
+
+    private final StageEngine.TickMode tickMode; // How the monsters are moved in a tick.
+
+    /** Creates a stage configuration where the monsters are moved serially.
+     *
+     * @param difficulty The stage difficulty.
+     * @param rowSize Number of rows in the stage map.
+     * @param colSize Number of columns in the stage map.
+     * @param sampler The sampler with the weights of the game elements.
+     * @param generationMode How the stage map is generated.
+     */
+    public StageConfig(StageEngine.Difficulty difficulty, int rowSize, int colSize,
+        TileSampler sampler, StageEngine.GenerationMode generationMode) {
+        this(difficulty, rowSize, colSize, sampler, generationMode, StageEngine.TickMode.SERIAL);
+    }
+
+    /** Creates a stage configuration.
+     *
+     * @param difficulty The stage difficulty.
+     * @param rowSize Number of rows in the stage map.
+     * @param colSize Number of columns in the stage map.
+     * @param sampler The sampler with the weights of the game elements.
+     * @param generationMode How the stage map is generated.
+     * @param tickMode How the monsters are moved in a tick.
+     */
+    public StageConfig(StageEngine.Difficulty difficulty, int rowSize, int colSize,
+        TileSampler sampler, StageEngine.GenerationMode generationMode,
+        StageEngine.TickMode tickMode) {
+        // The start and the goal need two different cells.
+        if (rowSize < 1 || colSize < 1 || (long) rowSize * colSize < 2) {
+            throw new IllegalArgumentException("A stage map needs at least 2 cells.");
+        }
+        if ((long) rowSize * colSize > MAX_CELLS) {
+            throw new IllegalArgumentException("A stage map can have at most "
+                + MAX_CELLS + " cells.");
+        }
+        this.difficulty = difficulty;
+        this.rowSize = rowSize;
+        this.colSize = colSize;
+        this.sampler = sampler;
+        this.generationMode = generationMode;
+        this.tickMode = tickMode;
+    }
+
+    /** Creates a stage configuration with the weights of each game element.
+     *
+     * @param difficulty The stage difficulty.
+     * @param rowSize Number of rows in the stage map.
+     * @param colSize Number of columns in the stage map.
+     * @param monsterWeight Weight of monsters.
+     * @param obstacleWeight Weight of obstacles.
+     * @param wallWeight Weight of walls.
+     * @param emptyWeight Weight of empty cells.
+     * @param generationMode How the stage map is generated.
+     */
+    public StageConfig(StageEngine.Difficulty difficulty, int rowSize, int colSize,
+        double monsterWeight, double obstacleWeight, double wallWeight, double emptyWeight,
+        StageEngine.GenerationMode generationMode) {
+        this(difficulty, rowSize, colSize,
+            new TileSampler(monsterWeight, obstacleWeight, wallWeight, emptyWeight),
+            generationMode);
+    }
+
+    /** Returns the configuration of the stage in the game window with a difficulty,
+     *  where the stage map dimensions depend on the stage difficulty.
+     *
+     * @param difficulty The stage difficulty.
+     * @return The stage configuration.
+     */
+    public static StageConfig forDifficulty(StageEngine.Difficulty difficulty) {
+        int size = 0;
+
+        /* Create cases for the difficulty where we can switch the difficulty
+         * the according stage map with corresponding game elements and stage map dimensions.
+         */
+        switch (difficulty) {
+            case EASY -> size = 15;
+            case MEDIUM -> size = 25;
+            case HARD -> size = 40;
+            default -> {
+                // No other cases to cover since there are only 3 stage difficulties.
+            }
+        }
+        return new StageConfig(difficulty, size, size, TileSampler.forDifficulty(difficulty),
+            StageEngine.GenerationMode.RANDOM);
+    }
+
+    /** Returns a copy of this configuration with another way to generate the stage map.
+     *
+     * @param generationMode How the stage map is generated.
+     * @return The stage configuration with the generation mode.
+     */
+    public StageConfig withGenerationMode(StageEngine.GenerationMode generationMode) {
+        return new StageConfig(difficulty, rowSize, colSize, sampler, generationMode, tickMode);
+    }
+
+    /** Returns a copy of this configuration with another way to move the monsters in a tick.
+     *
+     * @param tickMode How the monsters are moved in a tick.
+     * @return The stage configuration with the tick mode.
+     */
+    public StageConfig withTickMode(StageEngine.TickMode tickMode) {
+        return new StageConfig(difficulty, rowSize, colSize, sampler, generationMode, tickMode);
+    }
+
+    /** Returns the stage difficulty.
+     *
+     * @return The stage difficulty.
+     */
+    public StageEngine.Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    /** Returns the number of rows in the stage map.
+     *
+     * @return The number of rows.
+     */
+    public int getRowSize() {
+        return rowSize;
+    }
+
+    /** Returns the number of columns in the stage map.
+     *
+     * @return The number of columns.
+     */
+    public int getColSize() {
+        return colSize;
+    }
+
+    /** Returns the sampler with the weights of the game elements.
+     *
+     * @return The sampler.
+     */
+    public TileSampler getSampler() {
+        return sampler;
+    }
+
+    /** Returns how the stage map is generated.
+     *
+     * @return The generation mode.
+     */
+    public StageEngine.GenerationMode getGenerationMode() {
+        return generationMode;
+    }
+
+    /** Returns how the monsters are moved in a tick.
+     *
+     * @return The tick mode.
+     */
+    public StageEngine.TickMode getTickMode() {
+        return tickMode;
+    }
+}
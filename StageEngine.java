@@ -0,0 +1,908 @@
+// All imports needed to run a stage without a user interface.
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+
+/** This holds the rules of a stage, without any user interface, so that a stage can
+ *  also be played without a display (for example to simulate many games in a row).
+ *  The stage engine contains:
+ *  - The stage map with the game elements (walls, obstacles, monsters, the start and the goal).
+ *  - The player, which moves on the stage map.
+ *  - The monsters, which move every time the stage ticks.
+ *  - One random generator, which is seeded when the stage map is generated and is used for
+ *    the stage map and then for every move of the monsters. So a seed and the moves of the
+ *    player give the same game every time.
+ *  - The stage time, which is measured from when the stage map is generated until the tick
+ *    where the player reaches the goal (or dies), with a monotonic clock in nanoseconds.
+ *  Everything that happens in the stage is reported to the listeners of the stage engine,
+ *  such as the game stage which shows the stage map in the game window.
+ */
+public class StageEngine {
+
+    // The game elements as they are stored in the stage map, with one byte for each cell.
+    static final byte EMPTY = 0;
+    static final byte WALL = 1;
+    static final byte OBSTACLE = 2;
+    static final byte MONSTER = 3;
+    static final byte GOAL = 4;
+    static final byte START = 5;
+
+    /** Enums to represent difficulties.
+     */
+    public static enum Difficulty {
+        EASY, MEDIUM, HARD
+    }
+
+    /** Enums to represent how the stage map is generated:
+     *  - RANDOM fills the whole stage map randomly and tries again if the goal can't be reached.
+     *  - CORRIDOR first walks a corridor from the start to the goal and then fills the rest,
+     *    so the goal can always be reached after one fill (also for large and dense maps).
+     */
+    public static enum GenerationMode {
+        RANDOM, CORRIDOR
+    }
+
+    /** Enums to represent how the monsters are moved in a tick (see moveMonsters):
+     *  - SERIAL moves the monsters on the thread which runs the stage engine.
+     *  - PARALLEL moves stripes of monsters on all cores, once there are enough monsters.
+     *  Both modes move the monsters in the same way, so a seed gives the same game in both.
+     */
+    public static enum TickMode {
+        SERIAL, PARALLEL
+    }
+
+    /** Enums to represent a move of the player, as queued in the real-time mode (see GameLoop).
+     */
+    public static enum Move {
+        UP, DOWN, LEFT, RIGHT
+    }
+
+    /** A listener which is told about everything that happens in the stage.
+     *  The listeners are called on the thread which runs the stage engine, which is the
+     *  simulation thread of the game loop while a stage is played (see GameLoop).
+     *  Every method does nothing by default, so a listener only overrides what it needs:
+     *  the snapshots of the stage follow the changed cells (see SnapshotExchange), and the
+     *  game stage only needs to know when the stage is over (see GameStage).
+     */
+    public static interface Listener {
+
+        /** Called when a cell in the stage map has changed.
+         * 
+         * @param row The row of the cell.
+         * @param col The column of the cell.
+         */
+        default void cellChanged(int row, int col) {
+            // Not needed by every listener.
+        }
+
+        /** Called when a new stage map has been generated, so every cell has changed.
+         */
+        default void mapGenerated() {
+            // Not needed by every listener.
+        }
+
+        /** Called when the stage has ticked, after all monsters have moved.
+         */
+        default void ticked() {
+            // Not needed by every listener.
+        }
+
+        /** Called when the player has collided with an obstacle or monster.
+         */
+        default void playerDied() {
+            // Not needed by every listener.
+        }
+
+        /** Called when the player has reached the goal.
+         */
+        default void goalReached() {
+            // Not needed by every listener.
+        }
+    }
+
+    /** A task which runs an action for a range of bands of rows (see forEachBand) or stripes
+     *  of monsters (see forEachStripe), where the range is split in halves until each task
+     *  has one band or stripe.
+     */
+    private static class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L; // Tasks are never serialized.
+
+        private final IntConsumer action; // The action for one band.
+        private final int from; // The first band of the range.
+        private final int to; // The band after the range.
+
+        BandTask(IntConsumer action, int from, int to) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                action.accept(from);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BandTask(action, from, middle), new BandTask(action, middle, to));
+            }
+        }
+    }
+
+    private StageConfig config; // The difficulty, dimensions and weights of the stage.
+
+    private Difficulty difficulty; // For the stage difficulty.
+
+    private int rowSize; // Number of rows in the stage map.
+
+    private int colSize; // Number of columns in the stage map.
+
+    private TileGrid stageMap; // The cells in the stage map, with one byte for each cell.
+
+    private int[] monsters; // Positions (row * colSize + col) of the monsters in the stage map.
+
+    private int monsterCount; // Number of monsters in the stage map.
+
+    private int[] nextMonsters; // Positions of the monsters after the tick (see moveMonsters).
+
+    private byte[] proposals; // The proposed move (direction + 1) of the monster in each cell.
+
+    private PlayerMovement player; // A player with movement methods.
+
+    /* Whether the player has died or reached the goal. This is also read by the stopwatch on
+     * the Event Dispatch Thread while the game loop runs the stage on its own thread.
+     */
+    private volatile boolean finished;
+
+    private static final int MAX_GENERATION_TRIES = 20; // Tries before a path is cleared instead.
+
+    private static final int BAND_CELLS = 1 << 16; // Cells in a band of rows (see forEachBand).
+
+    private static final int PARALLEL_CELLS = 1 << 18; // Smallest stage map filled in parallel.
+
+    private static final int STRIPE_MONSTERS = 1 << 12; // Monsters in a stripe (forEachStripe).
+
+    private static final int PARALLEL_MONSTERS = 1 << 14; // Fewest monsters moved in parallel.
+
+    private int generationTries; // Number of tries needed when the stage map was last generated.
+
+    private boolean[] reached; // Cells reached by the flood fill, only while generating a map.
+
+    private final List<Listener> listeners = new ArrayList<>(); // Listeners of the stage.
+
+    private LongSupplier clock; // Monotonic clock for the stage time.
+
+    private long startTime; // Clock time (nanoseconds) when the stage map was generated.
+
+    private long finishTime; // Clock time (nanoseconds) of the tick which finished the stage.
+
+    private long seed; // The seed of the random generator of the current stage map.
+
+    private SplittableRandom random; // Generates the stage map and then moves the monsters.
+
+    /** Create a stage with a stage map of which the size depends on the difficulty.
+     * 
+     *  @param difficulty The stage with the corresponding difficulty.
+     */
+    public StageEngine(Difficulty difficulty) {
+        this(StageConfig.forDifficulty(difficulty));
+    }
+
+    /** Create a stage with any dimensions and weights of the game elements.
+     * 
+     *  @param config The configuration of the stage.
+     */
+    public StageEngine(StageConfig config) {
+        this(config, ThreadLocalRandom.current().nextLong());
+    }
+
+    /** Create a stage with any dimensions and weights of the game elements, where the first
+     *  stage map is generated with a seed (so the same seed gives the same stage map).
+     * 
+     *  @param config The configuration of the stage.
+     *  @param seed The seed of the random generator.
+     */
+    public StageEngine(StageConfig config, long seed) {
+        this(config, seed, System::nanoTime);
+    }
+
+    /** Create a stage where the first stage map is generated with a seed, and the stage time
+     *  comes from another clock (for example to play a stage again without waiting).
+     * 
+     *  @param config The configuration of the stage.
+     *  @param seed The seed of the random generator.
+     *  @param clock The clock of the stage time, which returns the time in nanoseconds.
+     */
+    StageEngine(StageConfig config, long seed, LongSupplier clock) {
+        this.config = config;
+        this.clock = clock;
+        this.difficulty = config.getDifficulty();
+        this.rowSize = config.getRowSize();
+        this.colSize = config.getColSize();
+
+        // Initialize the player at the start of the stage map.
+        player = new PlayerMovement(0, 0, this);
+
+        // Initialise a grid with corresponding dimensions (one byte for each cell).
+        this.stageMap = new TileGrid(rowSize, colSize); // Initializes the stage map
+
+        // Generate game elements in the stage map.
+        generateMap(seed);
+    }
+
+    /** Adds a listener which is told about everything that happens in the stage.
+     * 
+     * @param listener The listener to add.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /** Returns the stage difficulty.
+     * 
+     * @return The difficulty of the stage.
+     */
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    /** Returns the number of rows in the stage map.
+     * 
+     * @return The number of rows.
+     */
+    public int getRowSize() {
+        return rowSize;
+    }
+
+    /** Returns the number of columns in the stage map.
+     * 
+     * @return The number of columns.
+     */
+    public int getColSize() {
+        return colSize;
+    }
+
+    /** Returns the configuration of the stage.
+     * 
+     * @return The stage configuration.
+     */
+    public StageConfig getConfig() {
+        return config;
+    }
+
+    /** Returns the grid with the cells of the stage map (see EMPTY to START for the bytes).
+     * 
+     * @return The grid of the stage map.
+     */
+    TileGrid getGrid() {
+        return stageMap;
+    }
+
+    /** Returns the player of the stage.
+     * 
+     * @return The player.
+     */
+    public PlayerMovement getPlayer() {
+        return player;
+    }
+
+    /** Returns the number of monsters in the stage map.
+     * 
+     * @return The number of monsters.
+     */
+    public int getMonsterCount() {
+        return monsterCount;
+    }
+
+    /** Returns the position of a monster in the stage map.
+     * 
+     * @param k The number of the monster.
+     * @return The cell of the monster (row * colSize + col).
+     */
+    int getMonsterCell(int k) {
+        return monsters[k];
+    }
+
+    /** Checks if the stage is over, because the player has died or reached the goal.
+     * 
+     * @return true if the stage is over, false otherwise.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /** Replaces the clock of the stage time, for example to play a stage without waiting.
+     * 
+     * @param clock The clock, which returns the time in nanoseconds.
+     */
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /** Returns the time since the stage map was generated, which stops at the tick
+     *  where the stage is over.
+     * 
+     * @return The stage time in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return (finished ? finishTime : clock.getAsLong()) - startTime;
+    }
+
+    /** Returns the finished stage time, which is registered in the leaderboard.
+     * 
+     * @return The stage time in milliseconds.
+     */
+    public int getFinishTime() {
+        long millis = TimeUnit.NANOSECONDS.toMillis(getElapsedNanos());
+        return (int) Math.min(Integer.MAX_VALUE, millis);
+    }
+
+    /** Places a game element in a cell of the stage map and tells the listeners about it.
+     * 
+     * @param cell The number of the cell (row * colSize + col).
+     * @param tile The game element to place (see EMPTY to START).
+     */
+    private void setTile(int cell, byte tile) {
+        if (stageMap.get(cell) != tile) {
+            stageMap.set(cell, tile);
+            for (Listener listener : listeners) {
+                listener.cellChanged(cell / colSize, cell % colSize);
+            }
+        }
+    }
+
+    /** Generates the map with game elements, where this amount is based on the density
+     *  according to the stage difficulty (see TileSampler for the weights of the game elements).
+     * 
+     *  The stage map is generated again until the goal can be reached from the start,
+     *  and after too many tries a path from the start to the goal is cleared instead.
+     *  In the CORRIDOR generation mode, this path is cleared before the stage map is filled.
+     *  A new seed is picked for the random generator (see getSeed).
+     */
+    public void generateMap() {
+        generateMap(ThreadLocalRandom.current().nextLong());
+    }
+
+    /** Generates the map with game elements in the same way as generateMap(), where the
+     *  random generator of the stage is seeded first. The monsters keep moving with the same
+     *  random generator, so the same seed and the same moves of the player give the same game.
+     * 
+     * @param seed The seed of the random generator.
+     */
+    public void generateMap(long seed) {
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+
+        // The sampler with the density of game elements from the stage configuration.
+        TileSampler sampler = config.getSampler();
+
+        if (config.getGenerationMode() == GenerationMode.CORRIDOR) {
+            // Clear a corridor from the start to the goal first, so one fill is always enough.
+            generationTries = 1;
+            clearReached();
+            walkPath(random);
+            fillMap(sampler, random, true);
+        } else {
+            /* Generates game elements randomly on the stage map until the goal can be reached
+             * from the start, where the map is repaired after too many tries.
+             */
+            boolean reachable = false;
+            generationTries = 0;
+            while (!reachable && generationTries < MAX_GENERATION_TRIES) {
+                generationTries++;
+                fillMap(sampler, random, false);
+                reachable = isGoalReachable();
+            }
+            if (!reachable) {
+                // Every try was a dead end, so a path is cleared in the last generated map.
+                clearReached();
+                walkPath(random);
+                clearPath();
+            }
+        }
+
+        // Keep track of where the monsters are, so tick() doesn't have to search for them.
+        indexMonsters();
+
+        // The reached cells are only needed while generating, so they aren't kept for the stage.
+        reached = null;
+
+        // A new map starts with the player alive at the start, and the stage time starts.
+        player.respawn(0, 0);
+        finished = false;
+        startTime = clock.getAsLong();
+
+        // Every cell of the stage map has changed.
+        for (Listener listener : listeners) {
+            listener.mapGenerated();
+        }
+    }
+
+    /** Returns the seed of the random generator, with which the current stage map
+     *  was generated.
+     * 
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /** Returns how many times the stage map was filled before the goal could be reached,
+     *  when the stage map was last generated.
+     * 
+     * @return The number of tries.
+     */
+    public int getGenerationTries() {
+        return generationTries;
+    }
+
+    /** Checks if the goal can be reached from the start with a flood fill (breadth-first search),
+     *  where the player can't pass through walls and obstacles.
+     *  Monsters don't block the path, since they move.
+     * 
+     * @return true if the goal can be reached, false otherwise.
+     */
+    boolean isGoalReachable() {
+        int cells = stageMap.size();
+        clearReached();
+
+        /* The queue only holds the cells which are reached but not visited yet (the frontier),
+         * which is usually about as long as a diagonal of the stage map, so it starts at that
+         * size and only grows when the frontier doesn't fit.
+         */
+        int[] queue = new int[Math.max(16, rowSize + colSize)];
+
+        // Start the flood fill at the start in the top left corner.
+        int head = 0;
+        int tail = 0;
+        reached[0] = true;
+        queue[tail++] = 0;
+
+        while (head < tail) {
+            int cell = queue[head++];
+            if (cell == cells - 1) {
+                return true; // The goal is in the bottom right corner.
+            }
+            if (tail + 4 > queue.length) {
+                // Make room for 4 adjacent cells: move the frontier to the front, or grow.
+                int frontier = tail - head;
+                int[] moved = frontier + 4 <= queue.length / 2 ? queue
+                    : new int[(int) Math.min(2L * queue.length, cells + 4L)]; // At most every cell.
+                System.arraycopy(queue, head, moved, 0, frontier);
+                queue = moved;
+                head = 0;
+                tail = frontier;
+            }
+            int row = cell / colSize;
+            int col = cell % colSize;
+
+            // Visit the adjacent cells above, below, left and right of the cell.
+            if (row > 0 && isPassable(cell - colSize)) {
+                reached[cell - colSize] = true;
+                queue[tail++] = cell - colSize;
+            }
+            if (row < rowSize - 1 && isPassable(cell + colSize)) {
+                reached[cell + colSize] = true;
+                queue[tail++] = cell + colSize;
+            }
+            if (col > 0 && isPassable(cell - 1)) {
+                reached[cell - 1] = true;
+                queue[tail++] = cell - 1;
+            }
+            if (col < colSize - 1 && isPassable(cell + 1)) {
+                reached[cell + 1] = true;
+                queue[tail++] = cell + 1;
+            }
+        }
+        return false;
+    }
+
+    /** Checks if the flood fill can continue to a cell which it hasn't reached yet.
+     * 
+     * @param cell The cell (row * colSize + col).
+     * @return true if the cell isn't reached yet and isn't a wall or obstacle, false otherwise.
+     */
+    private boolean isPassable(int cell) {
+        byte tile = stageMap.get(cell);
+        return !reached[cell] && tile != WALL && tile != OBSTACLE;
+    }
+
+    /** Returns the number of rows in a band of rows, which has about BAND_CELLS cells.
+     * 
+     * @return The number of rows in a band.
+     */
+    private int getBandRows() {
+        return Math.max(1, BAND_CELLS / colSize);
+    }
+
+    /** Runs an action for every band of rows in the stage map, where each band has
+     *  getBandRows() rows (except the last band). Large stage maps are split into tasks of
+     *  a ForkJoinPool, so the bands are done in parallel on all cores; an action must then
+     *  only change its own band. The bands only depend on the dimensions of the stage map,
+     *  so the result doesn't depend on whether the bands are done in parallel.
+     * 
+     * @param action The action, which gets the number of the band.
+     */
+    private void forEachBand(IntConsumer action) {
+        int bands = (rowSize + getBandRows() - 1) / getBandRows();
+        if (stageMap.size() < PARALLEL_CELLS || bands == 1) {
+            for (int band = 0; band < bands; band++) {
+                action.accept(band);
+            }
+        } else {
+            ForkJoinPool.commonPool().invoke(new BandTask(action, 0, bands));
+        }
+    }
+
+    /** Fills the stage map with random game elements, with the start in the top left corner
+     *  and the goal in the bottom right corner.
+     *  Every band of rows gets its own random generator, which is split from the random
+     *  generator of the stage in the order of the bands. So the stage map only depends on
+     *  the seed, also when the bands are filled in parallel (see forEachBand).
+     * 
+     * @param sampler The sampler which picks the game elements.
+     * @param random The random generator of the stage.
+     * @param keepPath Whether the cells on the walked path (see walkPath) are kept empty.
+     */
+    private void fillMap(TileSampler sampler, SplittableRandom random, boolean keepPath) {
+        int cells = stageMap.size();
+        int bandCells = getBandRows() * colSize;
+        SplittableRandom[] bandRandoms = new SplittableRandom[(cells + bandCells - 1) / bandCells];
+        for (int band = 0; band < bandRandoms.length; band++) {
+            bandRandoms[band] = random.split();
+        }
+
+        forEachBand(band -> {
+            SplittableRandom bandRandom = bandRandoms[band];
+            int last = (int) Math.min(cells, (long) (band + 1) * bandCells);
+            for (int cell = band * bandCells; cell < last; cell++) {
+                if (keepPath && reached[cell]) {
+                    stageMap.set(cell, EMPTY); // Part of the corridor to the goal.
+                } else {
+                    stageMap.set(cell, sampler.sample(bandRandom));
+                }
+            }
+        });
+        /* Generate the player spawn point to be in the top left corner,
+         * and the goal to be in the bottom right corner.
+         */
+        stageMap.set(0, START);
+        stageMap.set(cells - 1, GOAL);
+    }
+
+    /** Resets the cells reached by the flood fill (also used to mark a path), where the array
+     *  is created when a stage map is generated and reused for every try of that stage map.
+     */
+    private void clearReached() {
+        int cells = stageMap.size();
+        if (reached == null || reached.length != cells) {
+            reached = new boolean[cells];
+        } else {
+            Arrays.fill(reached, false);
+        }
+    }
+
+    /** Walks a path from the start to the goal, where the path randomly moves down or right,
+     *  and marks the cells of this path in the reached cells.
+     * 
+     * @param random The random generator for the path.
+     */
+    private void walkPath(SplittableRandom random) {
+        int row = 0;
+        int col = 0;
+        reached[0] = true;
+        while (row < rowSize - 1 || col < colSize - 1) {
+            // Move down or right, unless the bottom or the right side is already reached.
+            if (col == colSize - 1 || (row < rowSize - 1 && random.nextBoolean())) {
+                row++;
+            } else {
+                col++;
+            }
+            reached[row * colSize + col] = true;
+        }
+    }
+
+    /** Removes the walls, obstacles and monsters on the walked path (see walkPath).
+     */
+    private void clearPath() {
+        int cells = stageMap.size();
+        for (int cell = 0; cell < cells; cell++) {
+            byte tile = stageMap.get(cell);
+            if (reached[cell] && tile != START && tile != GOAL) {
+                stageMap.set(cell, EMPTY);
+            }
+        }
+    }
+
+    /** Collects the positions of all monsters in the stage map into the monster array,
+     *  in the order of the cells. The monsters of each band of rows are counted first,
+     *  so each band knows where its monsters go in the array (see forEachBand).
+     */
+    private void indexMonsters() {
+        int cells = stageMap.size();
+        int bandCells = getBandRows() * colSize;
+        int[] bandStarts = new int[(cells + bandCells - 1) / bandCells + 1];
+        forEachBand(band -> {
+            int last = (int) Math.min(cells, (long) (band + 1) * bandCells);
+            int count = 0;
+            for (int cell = band * bandCells; cell < last; cell++) {
+                if (stageMap.get(cell) == MONSTER) {
+                    count++;
+                }
+            }
+            bandStarts[band + 1] = count;
+        });
+
+        // Add up the counts, so each band starts after the monsters of the bands before it.
+        for (int band = 1; band < bandStarts.length; band++) {
+            bandStarts[band] += bandStarts[band - 1];
+        }
+        monsterCount = bandStarts[bandStarts.length - 1];
+        monsters = new int[monsterCount];
+        nextMonsters = new int[monsterCount];
+        if (proposals == null || proposals.length != cells) {
+            proposals = new byte[cells]; // Stays empty between ticks.
+        }
+
+        forEachBand(band -> {
+            int last = (int) Math.min(cells, (long) (band + 1) * bandCells);
+            int k = bandStarts[band];
+            for (int cell = band * bandCells; cell < last; cell++) {
+                if (stageMap.get(cell) == MONSTER) {
+                    monsters[k++] = cell;
+                }
+            }
+        });
+    }
+
+    /** Checks if a monster can move to a cell on the stage.
+     *  The monster can move if the cell is within the boundaries of the stage map,
+     *  and it is not the goal or another monster (monsters do eat walls and obstacles).
+     * 
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return true if the monster can move to the cell, false otherwise.
+     */
+    private boolean canMonsterMoveTo(int row, int col) {
+        if (!stageMap.isInBounds(row, col)) {
+            return false;
+        }
+        byte tile = stageMap.get(row, col);
+        return tile != GOAL && tile != MONSTER;
+    }
+
+    /** Move monsters according to player position and movement
+     *  to create a sense of "unpredictability".
+     *  Determines which tiles are occupied and where none of the game elements
+     *  can overlap a cell on the stage map.
+     *  If the player dies or wins, the listeners are told about it and the stage is over,
+     *  so later ticks don't change the stage anymore.
+     */
+    public void tick() {
+        if (finished) {
+            return; // Nothing moves anymore once the stage is over.
+        }
+        moveMonsters();
+        checkPlayer();
+    }
+
+    /** Does one step of the real-time mode, where the player and the monsters move separately:
+     *  a queued move of the player is done first, and then the monsters move if it is their turn.
+     *  Afterwards, the player is checked in the same way as after a tick.
+     * 
+     * @param move The queued move of the player, or null if the player doesn't move.
+     * @param monstersMove Whether the monsters move in this step.
+     */
+    public void step(Move move, boolean monstersMove) {
+        if (finished || (move == null && !monstersMove)) {
+            return; // Nothing changes in this step.
+        }
+        if (move != null) {
+            player.move(move);
+        }
+        if (monstersMove) {
+            moveMonsters();
+        }
+        checkPlayer();
+    }
+
+    /** Runs an action for every stripe of STRIPE_MONSTERS monsters in the monster array
+     *  (except the last stripe). The monster array is in the order of the cells when the stage
+     *  map is generated, and monsters only move one cell in a tick, so a stripe of monsters
+     *  stays in about the same rows. With the PARALLEL tick mode and enough monsters, the
+     *  stripes are split into tasks of a ForkJoinPool, so they are done in parallel on all cores.
+     * 
+     * @param action The action, which gets the number of the stripe.
+     */
+    private void forEachStripe(IntConsumer action) {
+        int stripes = (monsterCount + STRIPE_MONSTERS - 1) / STRIPE_MONSTERS;
+        if (config.getTickMode() == TickMode.SERIAL || monsterCount < PARALLEL_MONSTERS) {
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                action.accept(stripe);
+            }
+        } else {
+            ForkJoinPool.commonPool().invoke(new BandTask(action, 0, stripes));
+        }
+    }
+
+    /** Returns the random direction of a monster in a tick, which only depends on the seed of
+     *  the tick and the number of the monster, so the monsters can pick their directions in any
+     *  order. The bits are mixed in the same way as SplittableRandom does.
+     * 
+     * @param tickSeed The seed of the tick, from the random generator of the stage.
+     * @param k The number of the monster.
+     * @return The direction: 0 for left, 1 for down, 2 for right and 3 for up.
+     */
+    private static int monsterDirection(long tickSeed, int k) {
+        long z = tickSeed + (k + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (int) ((z ^ (z >>> 31)) >>> 62);
+    }
+
+    /** Returns the cell next to a cell in a direction, or -1 if it is outside the stage map.
+     * 
+     * @param cell The number of the cell.
+     * @param direction The direction (see monsterDirection).
+     * @return The number of the next cell, or -1.
+     */
+    private int nextCell(int cell, int direction) {
+        int row = cell / colSize;
+        int col = cell % colSize;
+        switch (direction) {
+            case 0 -> col--; // The monster moves left.
+            case 1 -> row++; // The monster moves down.
+            case 2 -> col++; // The monster moves right.
+            case 3 -> row--; // The monster moves up.
+            default -> {
+                // The move is invalid, resulting in an illegal game state.
+                throw new IllegalStateException();
+            }
+        }
+        return stageMap.isInBounds(row, col) ? stageMap.cellAt(row, col) : -1;
+    }
+
+    /** Returns the cell of the monster which gets to move into a cell, when more monsters
+     *  proposed to move there. The neighbours are checked in the order of their cells
+     *  (above, left, right, below), so the monster in the smallest cell wins.
+     * 
+     * @param cell The number of the cell which the monsters move into.
+     * @return The number of the cell of the monster which moves.
+     */
+    private int proposalWinner(int cell) {
+        int row = cell / colSize;
+        int col = cell % colSize;
+        if (row > 0 && proposals[cell - colSize] == 1 + 1) {
+            return cell - colSize; // The monster above moves down (direction 1).
+        }
+        if (col > 0 && proposals[cell - 1] == 2 + 1) {
+            return cell - 1; // The monster on the left moves right (direction 2).
+        }
+        if (col < colSize - 1 && proposals[cell + 1] == 0 + 1) {
+            return cell + 1; // The monster on the right moves left (direction 0).
+        }
+        return cell + colSize; // Only the monster below is left, which moves up.
+    }
+
+    /** Moves every monster once in a random direction, if the monster can move there.
+     *  The monsters move at the same time in two phases, so that the stripes of monsters can be
+     *  moved in parallel (see forEachStripe) and the result doesn't depend on the order:
+     *  - Propose: every monster picks a direction and proposes to move to the cell there,
+     *    if it can move there at the start of the tick (so not into another monster).
+     *  - Commit: if more monsters proposed the same cell, the monster in the smallest cell
+     *    moves (see proposalWinner), and the other monsters stay.
+     *  Each cell is then written by one monster only, also across the borders of the stripes.
+     *  This is the part of a tick which doesn't check the player (see tick), so it can also
+     *  be measured on its own, without the stage being over once a monster reaches the player.
+     */
+    public void moveMonsters() {
+        long tickSeed = random.nextLong();
+
+        // Propose: only the cell of each monster is written.
+        forEachStripe(stripe -> {
+            int last = Math.min(monsterCount, (stripe + 1) * STRIPE_MONSTERS);
+            for (int k = stripe * STRIPE_MONSTERS; k < last; k++) {
+                int direction = monsterDirection(tickSeed, k);
+                int newCell = nextCell(monsters[k], direction);
+                if (newCell >= 0 && canMonsterMoveTo(newCell / colSize, newCell % colSize)) {
+                    proposals[monsters[k]] = (byte) (direction + 1);
+                }
+            }
+        });
+
+        // Commit: the winner of a cell moves, and only the proposals are read.
+        forEachStripe(stripe -> {
+            int last = Math.min(monsterCount, (stripe + 1) * STRIPE_MONSTERS);
+            for (int k = stripe * STRIPE_MONSTERS; k < last; k++) {
+                int cell = monsters[k];
+                nextMonsters[k] = cell;
+                if (proposals[cell] != 0) {
+                    int newCell = nextCell(cell, proposals[cell] - 1);
+                    if (proposalWinner(newCell) == cell) {
+                        stageMap.set(cell, EMPTY);
+                        stageMap.set(newCell, MONSTER);
+                        nextMonsters[k] = newCell;
+                    }
+                }
+            }
+        });
+
+        // Clear the proposals for the next tick.
+        forEachStripe(stripe -> {
+            int last = Math.min(monsterCount, (stripe + 1) * STRIPE_MONSTERS);
+            for (int k = stripe * STRIPE_MONSTERS; k < last; k++) {
+                proposals[monsters[k]] = 0;
+            }
+        });
+
+        // Tell the listeners about the moved monsters, on the thread which runs the stage engine.
+        if (!listeners.isEmpty()) {
+            for (int k = 0; k < monsterCount; k++) {
+                if (nextMonsters[k] != monsters[k]) {
+                    for (Listener listener : listeners) {
+                        listener.cellChanged(monsters[k] / colSize, monsters[k] % colSize);
+                        listener.cellChanged(nextMonsters[k] / colSize, nextMonsters[k] % colSize);
+                    }
+                }
+            }
+        }
+        int[] previous = monsters;
+        monsters = nextMonsters;
+        nextMonsters = previous;
+    }
+
+    /** Checks if the player has collided with an obstacle or monster, or has reached the goal,
+     *  and tells the listeners about the tick.
+     */
+    private void checkPlayer() {
+        // Marks a tile with the player occupied.
+        byte occupied = stageMap.get(player.getPlayerY(), player.getPlayerX());
+
+        if (occupied == OBSTACLE || occupied == MONSTER) {
+            // Player has collided with an obstacle or monster.
+            player.die();
+        } 
+        boolean over = player.isDead() || occupied == GOAL;
+        if (over) {
+            finishTime = clock.getAsLong(); // The stage time stops at this tick.
+        }
+        finished = over; // Set after the finish time, so another thread reads both together.
+
+        // Tell the listeners that the monsters have moved (to update the stage map visually).
+        for (Listener listener : listeners) {
+            listener.ticked();
+        }
+
+        if (occupied == GOAL) {
+            // Player has reached the goal.
+            for (Listener listener : listeners) {
+                listener.goalReached();
+            }
+        }
+        if (player.isDead()) {
+            // Player has died.
+            for (Listener listener : listeners) {
+                listener.playerDied();
+            }
+        }
+    }
+
+    /** Checks if the player can move to a cell on the stage.
+     *  The player can move if:
+     *  - it is within the boundaries of the stage map.
+     *  - there is no wall that is blocking the player's movement direction.
+     * 
+     * @param x x-coordinate of the player (which row).
+     * @param y y-coordinate of the player (which column).
+     * @return true if the player can move or if the player is within bounds, false otherwise. 
+     */
+    public boolean canMoveTo(int x, int y) {
+        return stageMap.isInBounds(x, y) && stageMap.get(x, y) != WALL;
+    }
+}
@@ -0,0 +1,184 @@
+/** This is a copy of a stage at the end of a step, which the simulation thread of the game loop
+ *  hands to the game stage on the Event Dispatch Thread (see SnapshotExchange):
+ *  - The cells of the stage map, the monsters and the player are copied together, so they
+ *    always belong to the same step.
+ *  - The cells which changed since the previous snapshot are listed, so the game stage only
+ *    redraws those cells (instead of comparing the whole stage map).
+ *  - The sequence number goes up by one for every published snapshot of a stage engine.
+ *  A snapshot is reused: it is only written by the simulation thread while it isn't shared,
+ *  and it is never changed while the game stage may read it.
+ */
+public class StageSnapshot {
+
+    private long sequence; // Number of the snapshot, which is 0 before it is first published.
+
+    private final byte[] cells; // The game element in each cell, row by row (see TileGrid).
+
+    private int[] monsters = new int[0]; // Positions (row * colSize + col) of the monsters.
+
+    private int monsterCount; // Number of monsters.
+
+    private int playerRow; // The row of the player.
+
+    private int playerCol; // The column of the player.
+
+    private boolean finished; // Whether the player has died or reached the goal.
+
+    private int[] changed = new int[16]; // Cells which changed since the previous snapshot.
+
+    private int changedCount; // Number of cells in changed.
+
+    private boolean allChanged; // Whether every cell changed (after a new stage map).
+
+    /** Creates a snapshot of a stage map with a number of cells, which are copied in later.
+     *
+     * @param cellCount The number of cells in the stage map.
+     */
+    StageSnapshot(int cellCount) {
+        this.cells = new byte[cellCount];
+    }
+
+    /** Copies every cell from the grid of the stage map.
+     *
+     * @param grid The grid of the stage map.
+     */
+    void copyAll(TileGrid grid) {
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = grid.get(cell);
+        }
+    }
+
+    /** Copies the cells which are listed as changed in a snapshot from the grid of the stage map,
+     *  so this snapshot also has the changes of the other snapshot.
+     *
+     * @param grid The grid of the stage map.
+     * @param changes The snapshot with the changed cells.
+     */
+    void copyChanges(TileGrid grid, StageSnapshot changes) {
+        if (changes.allChanged) {
+            copyAll(grid);
+            return;
+        }
+        for (int k = 0; k < changes.changedCount; k++) {
+            int cell = changes.changed[k];
+            cells[cell] = grid.get(cell);
+        }
+    }
+
+    /** Sets the cells which changed since the previous snapshot.
+     *
+     * @param cellList The changed cells.
+     * @param count The number of changed cells.
+     * @param all Whether every cell changed.
+     */
+    void setChanges(int[] cellList, int count, boolean all) {
+        allChanged = all;
+        changedCount = all ? 0 : count;
+        if (changed.length < changedCount) {
+            changed = new int[Math.max(changedCount, changed.length * 2)];
+        }
+        System.arraycopy(cellList, 0, changed, 0, changedCount);
+    }
+
+    /** Copies the monsters, the player and whether the stage is over from the stage engine.
+     *
+     * @param sequence The number of the snapshot.
+     * @param engine The stage engine.
+     */
+    void copyState(long sequence, StageEngine engine) {
+        this.sequence = sequence;
+        monsterCount = engine.getMonsterCount();
+        if (monsters.length < monsterCount) {
+            monsters = new int[monsterCount];
+        }
+        for (int k = 0; k < monsterCount; k++) {
+            monsters[k] = engine.getMonsterCell(k);
+        }
+        playerRow = engine.getPlayer().getPlayerY();
+        playerCol = engine.getPlayer().getPlayerX();
+        finished = engine.isFinished();
+    }
+
+    /** Returns the number of the snapshot.
+     *
+     * @return The sequence number.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /** Returns the game element in a cell.
+     *
+     * @param cell The number of the cell (row * colSize + col).
+     * @return The byte of the game element.
+     */
+    public byte get(int cell) {
+        return cells[cell];
+    }
+
+    /** Returns the number of monsters.
+     *
+     * @return The number of monsters.
+     */
+    public int getMonsterCount() {
+        return monsterCount;
+    }
+
+    /** Returns the position of a monster.
+     *
+     * @param k The number of the monster.
+     * @return The cell of the monster (row * colSize + col).
+     */
+    public int getMonster(int k) {
+        return monsters[k];
+    }
+
+    /** Returns the row of the player.
+     *
+     * @return The row of the player.
+     */
+    public int getPlayerRow() {
+        return playerRow;
+    }
+
+    /** Returns the column of the player.
+     *
+     * @return The column of the player.
+     */
+    public int getPlayerCol() {
+        return playerCol;
+    }
+
+    /** Checks if the stage was over in this snapshot.
+     *
+     * @return true if the player has died or reached the goal, false otherwise.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /** Checks if every cell changed since the previous snapshot.
+     *
+     * @return true if a new stage map was generated, false otherwise.
+     */
+    public boolean isAllChanged() {
+        return allChanged;
+    }
+
+    /** Returns the number of cells which changed since the previous snapshot.
+     *
+     * @return The number of changed cells (0 if every cell changed, see isAllChanged).
+     */
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    /** Returns a cell which changed since the previous snapshot.
+     *
+     * @param k The number of the changed cell.
+     * @return The cell (row * colSize + col).
+     */
+    public int getChanged(int k) {
+        return changed[k];
+    }
+}
@@ -0,0 +1,100 @@
+// All imports needed to show the stopwatch.
+import java.awt.*;
+import java.util.Map;
+import javax.swing.JComponent;
+
+/** This shows the stage time of the stage which is played, such as " Elapsed Time:  12.34s".
+ *  The stopwatch is updated every frame, so the text is kept in one char array where only
+ *  the digits are written again when the shown time changes (no new strings are created).
+ *  There is one stopwatch in the game window, which is moved to the stage screen that is played.
+ */
+public class StopwatchLabel extends JComponent {
+
+    private static final long serialVersionUID = 1L; // Version of the serialized component.
+
+    private static final char[] PREFIX = " Elapsed Time:  ".toCharArray(); // Text before the time.
+
+    private static final int MAX_SECOND_DIGITS = 9; // Digits of the seconds which can be shown.
+
+    private static final int WIDTH_SECOND_DIGITS = 4; // Digits of the seconds in the width.
+
+    private final char[] text = new char[PREFIX.length + MAX_SECOND_DIGITS + 4]; // Shown text.
+
+    private int length; // Number of chars in the shown text.
+
+    private long shownHundredths = -1; // The shown time in hundredths of a second.
+
+    /** Creates a stopwatch which shows a time of 0 seconds.
+     */
+    public StopwatchLabel() {
+        System.arraycopy(PREFIX, 0, text, 0, PREFIX.length);
+        setForeground(Color.BLACK);
+        setFont(new Font("DialogInput", Font.BOLD, 14));
+        setAlignmentY(BOTTOM_ALIGNMENT);
+        setElapsed(0);
+    }
+
+    /** Shows a stage time, where the stopwatch is only repainted if the shown time changes.
+     *
+     * @param nanos The stage time in nanoseconds.
+     */
+    public void setElapsed(long nanos) {
+        long hundredths = Math.max(0, nanos / 10_000_000L);
+        if (hundredths == shownHundredths) {
+            return;
+        }
+        shownHundredths = hundredths;
+
+        // Count the digits of the seconds, which are written from right to left.
+        long seconds = Math.min(hundredths / 100, 999_999_999L);
+        int digits = 1;
+        for (long rest = seconds / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int position = PREFIX.length + digits;
+        long rest = seconds;
+        for (int k = position - 1; k >= PREFIX.length; k--) {
+            text[k] = (char) ('0' + rest % 10);
+            rest /= 10;
+        }
+
+        // Add the hundredths of a second.
+        int hundredth = (int) (hundredths % 100);
+        text[position] = '.';
+        text[position + 1] = (char) ('0' + hundredth / 10);
+        text[position + 2] = (char) ('0' + hundredth % 10);
+        text[position + 3] = 's';
+        length = position + 4;
+        repaint();
+    }
+
+    /** Returns the size of the stopwatch, which fits a time up to 9999.99 seconds
+     *  so the stage screen doesn't change its layout while the time goes up.
+     *
+     * @return The preferred size.
+     */
+    @Override
+    public Dimension getPreferredSize() {
+        FontMetrics metrics = getFontMetrics(getFont());
+        int width = metrics.charsWidth(PREFIX, 0, PREFIX.length)
+            + metrics.charWidth('0') * (WIDTH_SECOND_DIGITS + 2)
+            + metrics.charWidth('.') + metrics.charWidth('s');
+        return new Dimension(width, metrics.getHeight());
+    }
+
+    /** Draws the shown text directly from the char array.
+     *
+     * @param g The graphics of the stopwatch.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        // Use the same text antialiasing as the other labels.
+        Object hints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+        if (hints instanceof Map<?, ?> renderingHints) {
+            ((Graphics2D) g).addRenderingHints(renderingHints);
+        }
+        g.setColor(getForeground());
+        g.setFont(getFont());
+        g.drawChars(text, 0, length, 0, g.getFontMetrics().getAscent());
+    }
+}
@@ -0,0 +1,114 @@
+/** This stores the game elements of a stage map in one array with one byte for each cell
+ *  (see StageEngine.EMPTY to StageEngine.START for the stored bytes).
+ *  The cells are stored row by row, so cell (row, col) has the number row * colSize + col,
+ *  and the cells next to each other in a row are also next to each other in memory.
+ *  The memory of a stage engine per cell is:
+ *  - 1 byte for this grid and 1 byte for the proposed moves of the monsters (see
+ *    StageEngine.moveMonsters), and 8 bytes for each monster (its cell before and after a tick).
+ *    So a 10000x10000 stage map with 5% monsters needs about 240 MB.
+ *  - While a stage map is generated, 1 more byte per cell for the reached cells of the flood
+ *    fill, whose queue only holds the cells at its frontier. Both are released afterwards.
+ *  - While a stage is played in the game window, 3 more bytes for the snapshots and 5 bytes
+ *    for the changed cells (see SnapshotExchange).
+ */
+public class TileGrid {
+
+    private final int rowSize; // Number of rows in the stage map.
+
+    private final int colSize; // Number of columns in the stage map.
+
+    private final byte[] cells; // The game element in each cell, row by row.
+
+    /** Creates a grid where every cell is empty.
+     *
+     * @param rowSize Number of rows.
+     * @param colSize Number of columns.
+     */
+    public TileGrid(int rowSize, int colSize) {
+        this.rowSize = rowSize;
+        this.colSize = colSize;
+        this.cells = new byte[Math.multiplyExact(rowSize, colSize)];
+    }
+
+    /** Returns the number of rows.
+     *
+     * @return The number of rows.
+     */
+    public int getRowSize() {
+        return rowSize;
+    }
+
+    /** Returns the number of columns.
+     *
+     * @return The number of columns.
+     */
+    public int getColSize() {
+        return colSize;
+    }
+
+    /** Returns the number of cells.
+     *
+     * @return The number of cells (rowSize * colSize).
+     */
+    public int size() {
+        return cells.length;
+    }
+
+    /** Returns the number of a cell.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The number of the cell (row * colSize + col).
+     */
+    public int cellAt(int row, int col) {
+        return row * colSize + col;
+    }
+
+    /** Checks if a cell is within the boundaries of the grid.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return true if the cell is within the boundaries, false otherwise.
+     */
+    public boolean isInBounds(int row, int col) {
+        return (0 <= row && row < rowSize) && (0 <= col && col < colSize);
+    }
+
+    /** Returns the game element in a cell.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The byte of the game element.
+     */
+    public byte get(int row, int col) {
+        return cells[row * colSize + col];
+    }
+
+    /** Returns the game element in a cell.
+     *
+     * @param cell The number of the cell (row * colSize + col).
+     * @return The byte of the game element.
+     */
+    public byte get(int cell) {
+        return cells[cell];
+    }
+
+    /** Places a game element in a cell.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param tile The byte of the game element.
+     */
+    public void set(int row, int col, byte tile) {
+        cells[row * colSize + col] = tile;
+    }
+
+    /** Places a game element in a cell.
+     *
+     * @param cell The number of the cell (row * colSize + col).
+     * @param tile The byte of the game element.
+     */
+    public void set(int cell, byte tile) {
+        cells[cell] = tile;
+    }
+}
@@ -0,0 +1,159 @@
+// All imports needed to pick random game elements.
+import java.util.SplittableRandom;
+
+/** This picks random game elements for the stage map, where the chance of each game element
+ *  is its weight divided by the sum of all weights.
+ *  The weights are added up once when the sampler is created (in the order monsters,
+ *  obstacles, walls, empty cells) and scaled to thresholds between 0 and 2^31, 
+ *  so picking a game element only compares a random int with these thresholds.
+ *  One sampler is kept for each stage difficulty, so it is only created once.
+ */
+public class TileSampler {
+
+    /** The game elements (as stored in the stage map), in the same order as the thresholds.
+     */
+    private static final byte[] TILES = {
+        StageEngine.MONSTER, StageEngine.OBSTACLE, StageEngine.WALL, StageEngine.EMPTY
+    };
+
+    private static final TileSampler[] DIFFICULTY_SAMPLERS = createDifficultySamplers();
+
+    private final int monsterThreshold; // Random numbers below this pick a monster.
+
+    private final int obstacleThreshold; // Random numbers below this pick at most an obstacle.
+
+    private final int wallThreshold; // Random numbers below this pick at most a wall.
+
+    /** Creates a sampler with the weights of the game elements.
+     *
+     * @param monsterWeight Weight of monsters.
+     * @param obstacleWeight Weight of obstacles.
+     * @param wallWeight Weight of walls.
+     * @param emptyWeight Weight of empty cells.
+     */
+    public TileSampler(double monsterWeight, double obstacleWeight, double wallWeight,
+        double emptyWeight) {
+        if (monsterWeight < 0 || obstacleWeight < 0 || wallWeight < 0 || emptyWeight < 0) {
+            throw new IllegalArgumentException("Weights can't be negative.");
+        }
+        double totalWeight = monsterWeight + obstacleWeight + wallWeight + emptyWeight;
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("At least one weight must be positive.");
+        }
+        monsterThreshold = threshold(monsterWeight / totalWeight);
+        obstacleThreshold = threshold((monsterWeight + obstacleWeight) / totalWeight);
+        wallThreshold = threshold((monsterWeight + obstacleWeight + wallWeight) / totalWeight);
+    }
+
+    /** Scales an added up chance to a threshold for random numbers between 0 and 2^31.
+     *
+     * @param chance The added up chance, between 0 and 1.
+     * @return The threshold.
+     */
+    private static int threshold(double chance) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.round(chance * (1L << 31)));
+    }
+
+    /** Returns the sampler for a stage difficulty.
+     *
+     * @param difficulty The stage difficulty.
+     * @return The sampler with the weights of the stage difficulty.
+     */
+    public static TileSampler forDifficulty(StageEngine.Difficulty difficulty) {
+        return DIFFICULTY_SAMPLERS[difficulty.ordinal()];
+    }
+
+    /** Picks a random game element according to the weights.
+     *
+     * @param random The random generator.
+     * @return The picked game element (as stored in the stage map).
+     */
+    byte sample(SplittableRandom random) {
+        int randomNumber = random.nextInt() >>> 1; // Between 0 and 2^31.
+
+        /* Count the thresholds which the random number has reached, without branches:
+         * (threshold - 1 - randomNumber) is negative exactly when randomNumber >= threshold.
+         */
+        int index = ((monsterThreshold - 1 - randomNumber) >>> 31)
+            + ((obstacleThreshold - 1 - randomNumber) >>> 31)
+            + ((wallThreshold - 1 - randomNumber) >>> 31);
+        return TILES[index];
+    }
+
+    /** Creates the samplers for each stage difficulty, where the density of the game elements
+     *  depends on the stage difficulty.
+     *
+     *  We compute the density of the game elements using weights,
+     *  allowing for easier modifications.
+     *  In general, the density for the game elements are calculated as follows:
+     *  - Scaling (s) is the scale factor based on the stage difficulty, where 0 is for 'Easy',
+     *  '1' is for 'Medium' and '2' is for 'Hard'
+     *  - Wall weight (w) is some positive float,
+     *  - Obstacle weight (o) is some positive float,
+     *  - Monster weight (m) is some positive float,
+     *  - Empty cells weight (c) is the sum of the wall, obstacle and monster weights.
+     *  - Total weights (t) is the sum of the all the weights.
+     *  Then the probability of a certain game element in the stage map is its weight
+     *  divided by the total weights.
+     *
+     *  The probability of walls in the stage map is:
+     *  (w * (s + 1) / (t + c)).
+     *  The probability of obstacles in the stage map is:
+     *  (o * (s + 1) / (t + c)).
+     *  The probability of monsters in the stage map is:
+     *  (m * s / (t + c)).
+     *  The probability of empty cells in the stage map is 1/2.
+     *
+     * @return The samplers, indexed by the order of the difficulty enums.
+     */
+    private static TileSampler[] createDifficultySamplers() {
+        StageEngine.Difficulty[] difficulties = StageEngine.Difficulty.values();
+        TileSampler[] samplers = new TileSampler[difficulties.length];
+
+        for (StageEngine.Difficulty difficulty : difficulties) {
+            /* Returns the difficulty based on the enum order for difficulties,
+             * where 'Easy' has scaling 0, 'Medium' has scaling 1, and 'Hard' has scaling 2.
+             */
+            double scaling = (double) difficulty.ordinal();
+            double wallWeight = 0;
+            double obstacleWeight = 0;
+            double monsterWeight = 0;
+
+            // Generate density of game elements based on stage difficulty.
+            switch (difficulty) {
+                case EASY -> {
+                    // Density of game elements in the 'Easy' stage map.
+                    wallWeight = 0.5 * (scaling + 1.0);
+                    obstacleWeight = 0.25 * (scaling + 1.0);
+                    monsterWeight = 0.125 * (scaling + 1.0);
+                }
+                case MEDIUM -> {
+                    // Density of game elements in the 'Medium' stage map.
+                    wallWeight = 6 * (scaling + 1.0);
+                    obstacleWeight = 3 * (scaling + 1.0);
+                    monsterWeight = 2 * (scaling);
+                }
+                case HARD -> {
+                    // Density of game elements in the 'Hard' stage map.
+                    wallWeight = 12 * (scaling + 1.0);
+                    obstacleWeight = 8 * (scaling);
+                    monsterWeight = 4 * (scaling);
+                }
+                default -> {
+                    // Do nothing, since there are only 3 stage difficulties.
+                }
+            }
+            // Density of empty cells.
+            double emptyWeight = wallWeight + obstacleWeight + monsterWeight;
+
+            /* The stage maps are tuned to the earlier tree map, where each key added up all
+             * previous keys instead of only the previous weights (m, m + o, 2m + o + w,
+             * 4m + 2o + w + c). The same added up weights are kept, so stage maps have
+             * the same density of game elements as before.
+             */
+            samplers[difficulty.ordinal()] = new TileSampler(monsterWeight, obstacleWeight,
+                monsterWeight + wallWeight, 2 * monsterWeight + obstacleWeight + emptyWeight);
+        }
+        return samplers;
+    }
+}
@@ -0,0 +1,54 @@
+package escapade.bench;
+
+// All imports needed to run the benchmarks.
+import java.io.IOException;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Runs the benchmarks with the normal JMH command line options, where the results are
+ *  written to jmh-result.json and the allocation rate is measured (the gc profiler),
+ *  unless other options for the results or the profilers are given.
+ *  For example, "java -jar benchmarks/target/benchmarks.jar Tick -p size=40,2000"
+ *  runs the tick benchmark for the 40x40 and 2000x2000 stage maps.
+ */
+public class BenchmarkMain {
+
+    private BenchmarkMain() {
+        // Only the main method.
+    }
+
+    /** Runs the benchmarks.
+     *
+     * @param args The JMH command line options.
+     * @throws CommandLineOptionException If the options are not valid.
+     * @throws RunnerException If a benchmark fails.
+     * @throws IOException If the information can't be printed.
+     */
+    public static void main(String[] args)
+        throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams()
+            || options.shouldListProfilers() || options.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args); // Only prints information.
+            return;
+        }
+        Game.check(); // Fails here once if the game doesn't match the benchmarks.
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+        if (!options.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!options.getResult().hasValue()) {
+            builder.result("jmh-result.json");
+        }
+        if (options.getProfilers().isEmpty()) {
+            builder.addProfiler(GCProfiler.class);
+        }
+        new Runner(builder.build()).run();
+    }
+}
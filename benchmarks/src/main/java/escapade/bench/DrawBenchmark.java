@@ -0,0 +1,88 @@
+package escapade.bench;
+
+// All imports needed to measure how long it takes to draw the stage map.
+import java.util.concurrent.TimeUnit;
+import javax.swing.JComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures GameStage.draw() for the stages of the game window (15x15 up to 40x40), in a panel
+ *  of the default size and a larger one. The game stage draws into its image of the stage map
+ *  without a display (headless), just like in a frame of the game loop:
+ *  - drawTick redraws the cells which changed in a tick of the monsters.
+ *  - drawNewMap redraws the whole stage map after a new stage map is generated (the generation
+ *    is included, see GenerateMapBenchmark for the generation alone).
+ *  Every stage map is generated with the same seed, so each run does the same work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DrawBenchmark {
+
+    @Param({"EASY", "MEDIUM", "HARD"})
+    public String difficulty; // The difficulty of the stage.
+
+    @Param({"400", "1000"})
+    public int pixels; // Width and height of the panel.
+
+    private Object stage; // The game stage.
+
+    private Object engine; // The stage engine of the game stage.
+
+    /** Creates the game stage with the size of the panel, and draws its first stage map.
+     */
+    @Setup
+    public void setUp() {
+        stage = Game.newStage(difficulty);
+        ((JComponent) stage).setSize(pixels, pixels);
+        engine = Game.getEngine(stage);
+        drawNewMap(null);
+    }
+
+    /** Moves every monster once and draws the changed cells.
+     *
+     * @param blackhole Keeps the number of repainted cells, so the draw isn't optimized away.
+     */
+    @Benchmark
+    public void drawTick(Blackhole blackhole) {
+        Game.moveMonsters(engine);
+        Game.stopStage(stage); // Publishes the changes, as the game loop does after a step.
+        Game.draw(stage);
+        consume(blackhole);
+    }
+
+    /** Generates a new stage map and draws all of it.
+     *
+     * @param blackhole Keeps the number of repainted cells, so the draw isn't optimized away.
+     */
+    @Benchmark
+    public void drawNewMap(Blackhole blackhole) {
+        Game.generateMap(engine, Game.SEED); // The same stage map every time.
+        Game.stopStage(stage);
+        Game.draw(stage);
+        consume(blackhole);
+    }
+
+    /** Keeps the number of repainted cells of the last draw.
+     *
+     * @param blackhole The blackhole, or null during the setup.
+     */
+    private void consume(Blackhole blackhole) {
+        if (blackhole != null) {
+            blackhole.consume(Game.getRepaintedCells(stage));
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package escapade.bench;
+
+// All imports needed to reach the classes of the game from the benchmarks.
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Path;
+
+/** This reaches the classes of the game from the benchmarks. The classes of the game are in the
+ *  unnamed package (so GameWindow can be run from the folder of the project), which can't be
+ *  imported, and JMH doesn't allow benchmarks in the unnamed package. So the classes are looked
+ *  up by name once, and their methods are called through method handles in static final fields,
+ *  which the JIT compiler inlines like normal calls.
+ *  The game objects are passed around as Object.
+ */
+final class Game {
+
+    private static final MethodHandle NEW_CONFIG; // new StageConfig(difficulty, rows, cols, ...)
+    private static final MethodHandle WITH_TICK_MODE; // StageConfig.withTickMode(tickMode)
+    private static final MethodHandle NEW_ENGINE; // new StageEngine(config, seed)
+    private static final MethodHandle GENERATE_MAP; // StageEngine.generateMap(seed)
+    private static final MethodHandle MOVE_MONSTERS; // StageEngine.moveMonsters()
+    private static final MethodHandle MONSTER_COUNT; // StageEngine.getMonsterCount()
+    private static final MethodHandle GET_PLAYER; // StageEngine.getPlayer()
+    private static final MethodHandle[] PLAYER_MOVES; // PlayerMovement.moveUp() to moveRight()
+    private static final MethodHandle RESPAWN; // PlayerMovement.respawn(row, col)
+    private static final MethodHandle NEW_LEADERBOARD; // new Leaderboard(size)
+    private static final MethodHandle LEADERBOARD_ADD; // Leaderboard.add(name, time)
+    private static final MethodHandle LEADERBOARD_NAME; // Leaderboard.getName(rank)
+    private static final MethodHandle LEADERBOARD_TIME; // Leaderboard.getTime(rank)
+    private static final MethodHandle NEW_STORE; // new ScoreStore(directory, leaderboards)
+    private static final MethodHandle STORE_APPEND_ALL; // ScoreStore.appendAll(difficulty, ...)
+    private static final MethodHandle STORE_INDEX; // ScoreStore.getIndex(difficulty)
+    private static final MethodHandle STORE_CLOSE; // ScoreStore.close()
+    private static final MethodHandle INDEX_NAME; // ScoreIndex.getName(rank)
+    private static final MethodHandle INDEX_TIME; // ScoreIndex.getTime(rank)
+    private static final MethodHandle NEW_STAGE; // new GameStage(gameWindow, difficulty)
+    private static final MethodHandle STAGE_ENGINE; // GameStage.getEngine()
+    private static final MethodHandle STAGE_STOP; // GameStage.stop()
+    private static final MethodHandle STAGE_DRAW; // GameStage.draw()
+    private static final MethodHandle REPAINTED_CELLS; // GameStage.getRepaintedCells()
+
+    private static final Object HARD; // StageEngine.Difficulty.HARD
+    private static final Object[] GENERATION_MODES; // StageEngine.GenerationMode.values()
+    private static final Class<?> TICK_MODE; // The StageEngine.TickMode enum.
+    private static final Class<?> DIFFICULTY; // The StageEngine.Difficulty enum.
+    private static final Class<?> LEADERBOARD; // The Leaderboard class.
+
+    static final int UP = 0; // The moves of PLAYER_MOVES, in the order of StageEngine.Move.
+    static final int DOWN = 1;
+    static final int LEFT = 2;
+    static final int RIGHT = 3;
+
+    static final long SEED = 20241018L; // The seed of every stage, so each run is the same.
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> engine = Class.forName("StageEngine");
+            Class<?> config = Class.forName("StageConfig");
+            Class<?> player = Class.forName("PlayerMovement");
+            Class<?> difficulty = Class.forName("StageEngine$Difficulty");
+            DIFFICULTY = difficulty;
+            Class<?> mode = Class.forName("StageEngine$GenerationMode");
+            TICK_MODE = Class.forName("StageEngine$TickMode");
+            Class<?> store = Class.forName("ScoreStore");
+            Class<?> index = Class.forName("ScoreIndex");
+            LEADERBOARD = Class.forName("Leaderboard");
+
+            NEW_CONFIG = generic(lookup.findConstructor(config, MethodType.methodType(void.class,
+                difficulty, int.class, int.class, double.class, double.class, double.class,
+                double.class, mode)));
+            WITH_TICK_MODE = generic(lookup.findVirtual(config, "withTickMode",
+                MethodType.methodType(config, TICK_MODE)));
+            NEW_ENGINE = generic(lookup.findConstructor(engine,
+                MethodType.methodType(void.class, config, long.class)));
+            GENERATE_MAP = generic(lookup.findVirtual(engine, "generateMap",
+                MethodType.methodType(void.class, long.class)));
+            MOVE_MONSTERS = generic(lookup.findVirtual(engine, "moveMonsters",
+                MethodType.methodType(void.class)));
+            MONSTER_COUNT = generic(lookup.findVirtual(engine, "getMonsterCount",
+                MethodType.methodType(int.class)));
+            GET_PLAYER = generic(lookup.findVirtual(engine, "getPlayer",
+                MethodType.methodType(player)));
+            PLAYER_MOVES = new MethodHandle[4];
+            String[] moves = {"moveUp", "moveDown", "moveLeft", "moveRight"};
+            for (int k = 0; k < moves.length; k++) {
+                PLAYER_MOVES[k] = generic(lookup.findVirtual(player, moves[k],
+                    MethodType.methodType(void.class)));
+            }
+            RESPAWN = generic(lookup.findVirtual(player, "respawn",
+                MethodType.methodType(void.class, int.class, int.class)));
+
+            NEW_LEADERBOARD = generic(lookup.findConstructor(LEADERBOARD,
+                MethodType.methodType(void.class, int.class)));
+            LEADERBOARD_ADD = generic(lookup.findVirtual(LEADERBOARD, "add",
+                MethodType.methodType(void.class, String.class, int.class)));
+            LEADERBOARD_NAME = generic(lookup.findVirtual(LEADERBOARD, "getName",
+                MethodType.methodType(String.class, int.class)));
+            LEADERBOARD_TIME = generic(lookup.findVirtual(LEADERBOARD, "getTime",
+                MethodType.methodType(int.class, int.class)));
+            NEW_STORE = generic(lookup.findConstructor(store, MethodType.methodType(void.class,
+                Path.class, LEADERBOARD.arrayType())));
+            STORE_APPEND_ALL = generic(lookup.findVirtual(store, "appendAll",
+                MethodType.methodType(void.class, difficulty, String[].class, int[].class)));
+            STORE_INDEX = generic(lookup.findVirtual(store, "getIndex",
+                MethodType.methodType(index, difficulty)));
+            STORE_CLOSE = generic(lookup.findVirtual(store, "close",
+                MethodType.methodType(void.class)));
+            INDEX_NAME = generic(lookup.findVirtual(index, "getName",
+                MethodType.methodType(String.class, long.class)));
+            INDEX_TIME = generic(lookup.findVirtual(index, "getTime",
+                MethodType.methodType(int.class, long.class)));
+
+            Class<?> stage = Class.forName("GameStage");
+            NEW_STAGE = generic(lookup.findConstructor(stage, MethodType.methodType(void.class,
+                Class.forName("GameWindow"), difficulty)));
+            STAGE_ENGINE = generic(lookup.findVirtual(stage, "getEngine",
+                MethodType.methodType(engine)));
+            STAGE_STOP = generic(lookup.findVirtual(stage, "stop",
+                MethodType.methodType(void.class)));
+            STAGE_DRAW = generic(lookup.findVirtual(stage, "draw",
+                MethodType.methodType(void.class)));
+            REPAINTED_CELLS = generic(lookup.findVirtual(stage, "getRepaintedCells",
+                MethodType.methodType(int.class)));
+
+            HARD = valueOf(difficulty, "HARD");
+            GENERATION_MODES = mode.getEnumConstants();
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Game() {
+        // Only static methods.
+    }
+
+    /** Checks that every method of the game which the benchmarks call can be found.
+     *  This only loads this class (the methods are looked up once, when it is loaded),
+     *  so a renamed method is reported before any benchmark runs.
+     *
+     * @throws ExceptionInInitializerError If a class or method of the game can't be found.
+     */
+    static void check() {
+        // The static initializer has already looked up every method.
+    }
+
+    /** Changes the classes of the game in the type of a method handle to Object
+     *  (and arrays of them to Object), so it can be called with invokeExact.
+     *
+     * @param handle The method handle.
+     * @return The method handle with Object instead of the classes of the game.
+     */
+    private static MethodHandle generic(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int k = 0; k < type.parameterCount(); k++) {
+            if (isGameClass(type.parameterType(k))) {
+                type = type.changeParameterType(k, Object.class);
+            }
+        }
+        if (isGameClass(type.returnType())) {
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+
+    /** Checks if a type is a class of the game (or an array of them), which the benchmarks
+     *  can't name, instead of a primitive type or a class of the Java library.
+     *
+     * @param type The type.
+     * @return true if the type is a class of the game, false otherwise.
+     */
+    private static boolean isGameClass(Class<?> type) {
+        Class<?> element = type.isArray() ? type.getComponentType() : type;
+        return !element.isPrimitive() && element != String.class && element != Path.class;
+    }
+
+    /** Returns the enum constant with a name.
+     *
+     * @param enumClass The enum class.
+     * @param name The name of the constant.
+     * @return The enum constant.
+     */
+    private static Object valueOf(Class<?> enumClass, String name) {
+        for (Object constant : enumClass.getEnumConstants()) {
+            if (((Enum<?>) constant).name().equals(name)) {
+                return constant;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    /** Wraps an exception of a called method, which the benchmarks don't expect.
+     *
+     * @param e The exception.
+     * @return The exception to throw.
+     */
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (e instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(e);
+    }
+
+    /** Creates a stage engine with a square stage map of the 'Hard' difficulty.
+     *
+     * @param size Number of rows and columns.
+     * @param monsterWeight Weight of monsters.
+     * @param obstacleWeight Weight of obstacles.
+     * @param wallWeight Weight of walls.
+     * @param emptyWeight Weight of empty cells.
+     * @param generationMode The name of the generation mode (RANDOM or CORRIDOR).
+     * @param seed The seed of the random generator of the stage.
+     * @return The stage engine, with a generated stage map.
+     */
+    static Object newEngine(int size, double monsterWeight, double obstacleWeight,
+        double wallWeight, double emptyWeight, String generationMode, long seed) {
+        return newEngine(size, monsterWeight, obstacleWeight, wallWeight, emptyWeight,
+            generationMode, "SERIAL", seed);
+    }
+
+    /** Creates a stage engine with a square stage map of the 'Hard' difficulty.
+     *
+     * @param size Number of rows and columns.
+     * @param monsterWeight Weight of monsters.
+     * @param obstacleWeight Weight of obstacles.
+     * @param wallWeight Weight of walls.
+     * @param emptyWeight Weight of empty cells.
+     * @param generationMode The name of the generation mode (RANDOM or CORRIDOR).
+     * @param tickMode The name of the tick mode (SERIAL or PARALLEL).
+     * @param seed The seed of the random generator of the stage.
+     * @return The stage engine, with a generated stage map.
+     */
+    static Object newEngine(int size, double monsterWeight, double obstacleWeight,
+        double wallWeight, double emptyWeight, String generationMode, String tickMode,
+        long seed) {
+        Object mode = null;
+        for (Object constant : GENERATION_MODES) {
+            if (((Enum<?>) constant).name().equals(generationMode)) {
+                mode = constant;
+            }
+        }
+        try {
+            Object config = (Object) NEW_CONFIG.invokeExact(HARD, size, size, monsterWeight,
+                obstacleWeight, wallWeight, emptyWeight, mode);
+            config = (Object) WITH_TICK_MODE.invokeExact(config, valueOf(TICK_MODE, tickMode));
+            return (Object) NEW_ENGINE.invokeExact(config, seed);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls StageEngine.generateMap(seed). */
+    static void generateMap(Object engine, long seed) {
+        try {
+            GENERATE_MAP.invokeExact(engine, seed);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls StageEngine.moveMonsters(), which moves the monsters in a tick. */
+    static void moveMonsters(Object engine) {
+        try {
+            MOVE_MONSTERS.invokeExact(engine);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls StageEngine.getMonsterCount(). */
+    static int getMonsterCount(Object engine) {
+        try {
+            return (int) MONSTER_COUNT.invokeExact(engine);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls StageEngine.getPlayer(). */
+    static Object getPlayer(Object engine) {
+        try {
+            return (Object) GET_PLAYER.invokeExact(engine);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Moves the player with one of the move methods of PlayerMovement (which also tick).
+     *
+     * @param player The player.
+     * @param move UP, DOWN, LEFT or RIGHT.
+     */
+    static void movePlayer(Object player, int move) {
+        try {
+            PLAYER_MOVES[move].invokeExact(player);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls PlayerMovement.respawn(row, col). */
+    static void respawn(Object player, int row, int col) {
+        try {
+            RESPAWN.invokeExact(player, row, col);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls new Leaderboard(size). */
+    static Object newLeaderboard(int size) {
+        try {
+            return (Object) NEW_LEADERBOARD.invokeExact(size);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls Leaderboard.add(name, time). */
+    static void addScore(Object leaderboard, String name, int time) {
+        try {
+            LEADERBOARD_ADD.invokeExact(leaderboard, name, time);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls Leaderboard.getName(rank). */
+    static String getName(Object leaderboard, int rank) {
+        try {
+            return (String) LEADERBOARD_NAME.invokeExact(leaderboard, rank);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls Leaderboard.getTime(rank). */
+    static int getTime(Object leaderboard, int rank) {
+        try {
+            return (int) LEADERBOARD_TIME.invokeExact(leaderboard, rank);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Opens a score store with one leaderboard for each difficulty.
+     *
+     * @param directory The folder of the score store.
+     * @param leaderboardSize The number of lowest times kept in each leaderboard.
+     * @return The score store.
+     */
+    static Object openStore(Path directory, int leaderboardSize) {
+        Object leaderboards = java.lang.reflect.Array.newInstance(LEADERBOARD, 3);
+        for (int k = 0; k < 3; k++) {
+            java.lang.reflect.Array.set(leaderboards, k, newLeaderboard(leaderboardSize));
+        }
+        try {
+            return (Object) NEW_STORE.invokeExact(directory, leaderboards);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls ScoreStore.appendAll with the 'Hard' difficulty. */
+    static void appendScores(Object store, String[] names, int[] times) {
+        try {
+            STORE_APPEND_ALL.invokeExact(store, HARD, names, times);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls ScoreStore.getIndex with the 'Hard' difficulty. */
+    static Object getIndex(Object store) {
+        try {
+            return (Object) STORE_INDEX.invokeExact(store, HARD);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls ScoreStore.close(). */
+    static void closeStore(Object store) {
+        try {
+            STORE_CLOSE.invokeExact(store);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls ScoreIndex.getName(rank). */
+    static String getIndexName(Object index, long rank) {
+        try {
+            return (String) INDEX_NAME.invokeExact(index, rank);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls ScoreIndex.getTime(rank). */
+    static int getIndexTime(Object index, long rank) {
+        try {
+            return (int) INDEX_TIME.invokeExact(index, rank);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Creates a game stage of a difficulty without a game window, which draws into its image
+     *  of the stage map like on the screen (also without a display).
+     *
+     * @param difficulty The name of the difficulty (EASY, MEDIUM or HARD).
+     * @return The game stage.
+     */
+    static Object newStage(String difficulty) {
+        try {
+            return (Object) NEW_STAGE.invokeExact((Object) null, valueOf(DIFFICULTY, difficulty));
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls GameStage.getEngine(). */
+    static Object getEngine(Object stage) {
+        try {
+            return (Object) STAGE_ENGINE.invokeExact(stage);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls GameStage.stop(), which publishes the changes of the stopped stage. */
+    static void stopStage(Object stage) {
+        try {
+            STAGE_STOP.invokeExact(stage);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls GameStage.draw(). */
+    static void draw(Object stage) {
+        try {
+            STAGE_DRAW.invokeExact(stage);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** Calls GameStage.getRepaintedCells(). */
+    static int getRepaintedCells(Object stage) {
+        try {
+            return (int) REPAINTED_CELLS.invokeExact(stage);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package escapade.bench;
+
+// All imports needed to measure how long it takes to generate a stage map.
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures StageEngine.generateMap() on square stage maps from 15x15 (the 'Easy' stage)
+ *  up to 4000x4000, with the weights of the 'Hard' stage and both generation modes.
+ *  Every stage map is generated with the same seed, so each run does the same work.
+ *  Large stage maps are filled in parallel on the common ForkJoinPool; add
+ *  -jvmArgsAppend -Djava.util.concurrent.ForkJoinPool.common.parallelism=1
+ *  (or another number of threads) to see how the time scales with the number of cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerateMapBenchmark {
+
+    @Param({"15", "25", "40", "200", "1000", "2000", "4000"})
+    public int size; // Number of rows and columns.
+
+    @Param({"RANDOM", "CORRIDOR"})
+    public String generationMode; // How the stage map is generated.
+
+    private Object engine; // The stage engine.
+
+    /** Creates the stage engine, which generates its first stage map.
+     */
+    @Setup
+    public void setUp() {
+        // The weights of the 'Hard' stage (see TileSampler.createDifficultySamplers).
+        engine = Game.newEngine(size, 8, 16, 44, 92, generationMode, Game.SEED);
+    }
+
+    /** Generates a new stage map in the same stage engine.
+     */
+    @Benchmark
+    public void generateMap() {
+        Game.generateMap(engine, Game.SEED); // The same stage map every time.
+    }
+}
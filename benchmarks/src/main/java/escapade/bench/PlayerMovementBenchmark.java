@@ -0,0 +1,62 @@
+package escapade.bench;
+
+// All imports needed to measure how long it takes to move the player.
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures a sequence of PlayerMovement moves (each move also ticks the stage) on square
+ *  stage maps from 15x15 up to 2000x2000. The stage map has walls (which stop some moves)
+ *  but no monsters or obstacles, so the player stays alive. The player walks a square of
+ *  SIDE cells around the start, so the goal is never reached.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerMovementBenchmark {
+
+    private static final int SIDE = 4; // Moves in each direction of the walked square.
+
+    private static final int MOVES = 4 * SIDE; // Moves in one sequence.
+
+    // The directions of the walked square.
+    private static final int[] DIRECTIONS = {Game.RIGHT, Game.DOWN, Game.LEFT, Game.UP};
+
+    @Param({"15", "25", "40", "200", "1000", "2000"})
+    public int size; // Number of rows and columns.
+
+    private Object player; // The player of the stage engine.
+
+    /** Creates the stage engine, where a quarter of the cells are walls.
+     */
+    @Setup
+    public void setUp() {
+        player = Game.getPlayer(Game.newEngine(size, 0, 0, 25, 75, "CORRIDOR", Game.SEED));
+    }
+
+    /** Walks the player around a square: right, down, left and then up.
+     */
+    @Benchmark
+    @OperationsPerInvocation(MOVES)
+    public void moveSequence() {
+        for (int move : DIRECTIONS) {
+            for (int k = 0; k < SIDE; k++) {
+                Game.movePlayer(player, move);
+            }
+        }
+        Game.respawn(player, 0, 0); // Walls may have stopped some moves.
+    }
+}
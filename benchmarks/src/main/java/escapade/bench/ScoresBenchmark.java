@@ -0,0 +1,175 @@
+package escapade.bench;
+
+// All imports needed to measure how long it takes to read and add scores.
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures reading the leaderboard (what GameWindow.getScores and the leaderboard screen
+ *  read) and adding a finished stage time, with many scores already registered:
+ *  - leaderboardTop reads the lowest times of a Leaderboard in memory.
+ *  - indexTop reads the lowest times from the ScoreIndex of a ScoreStore on disk.
+ *  - addScore adds a finished stage time of one of the players to a Leaderboard.
+ *  - addNewPlayer adds the first finished stage time of a new player to a Leaderboard, which
+ *    shifts the best times of the slower players (so it depends on the number of players).
+ *  The scores are spread over a number of players, with random times. They are written to the
+ *  score store at once (ScoreStore.appendAll), and the leaderboard is filled again before every
+ *  iteration, so addScore and addNewPlayer always start from the number of scores of the
+ *  parameter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoresBenchmark {
+
+    private static final int LEADERBOARD_SIZE = 5; // Times shown in the leaderboard screen.
+
+    private static final int NEW_PLAYERS = 1000; // New players added in an addNewPlayer iteration.
+
+    @Param({"1000", "100000", "1000000"})
+    public int scores; // Number of registered scores.
+
+    @Param({"1000", "100000"})
+    public int players; // Number of different player names.
+
+    private String[] playerNames; // The player names.
+
+    private String[] names; // The player name of each registered score.
+
+    private int[] times; // The time of each registered score.
+
+    private Object leaderboard; // The leaderboard with every score.
+
+    private Path directory; // The folder of the score store.
+
+    private Object store; // The score store with every score.
+
+    private Object index; // The index of the stage difficulty of the scores.
+
+    private SplittableRandom random; // Picks the added scores.
+
+    private String[] newNames; // The names of the players added by addNewPlayer.
+
+    /** Picks the scores and registers them in a score store in a temporary folder.
+     *
+     * @throws IOException If the temporary folder can't be created.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        playerNames = new String[players];
+        for (int k = 0; k < players; k++) {
+            playerNames[k] = "Player" + k;
+        }
+        newNames = new String[NEW_PLAYERS];
+        for (int k = 0; k < NEW_PLAYERS; k++) {
+            newNames[k] = "New" + k;
+        }
+        SplittableRandom scoreRandom = new SplittableRandom(42);
+        names = new String[scores];
+        times = new int[scores];
+        for (int k = 0; k < scores; k++) {
+            names[k] = playerNames[scoreRandom.nextInt(players)];
+            times[k] = 1000 + scoreRandom.nextInt(600_000);
+        }
+
+        directory = Files.createTempDirectory("escapade-bench");
+        store = Game.openStore(directory, LEADERBOARD_SIZE);
+        Game.appendScores(store, names, times);
+        index = Game.getIndex(store);
+    }
+
+    /** Fills a new leaderboard with the registered scores, so the scores which addScore and
+     *  addNewPlayer added in the previous iteration are gone.
+     */
+    @Setup(Level.Iteration)
+    public void fillLeaderboard() {
+        leaderboard = Game.newLeaderboard(LEADERBOARD_SIZE);
+        for (int k = 0; k < scores; k++) {
+            Game.addScore(leaderboard, names[k], times[k]);
+        }
+        random = new SplittableRandom(43); // The same added scores in every iteration.
+    }
+
+    /** Closes the score store and deletes its folder.
+     */
+    @TearDown
+    public void tearDown() {
+        Game.closeStore(store);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Reads the names and times of the leaderboard in memory.
+     *
+     * @param blackhole Keeps the read names and times.
+     */
+    @Benchmark
+    public void leaderboardTop(Blackhole blackhole) {
+        for (int rank = 0; rank < LEADERBOARD_SIZE; rank++) {
+            blackhole.consume(Game.getName(leaderboard, rank));
+            blackhole.consume(Game.getTime(leaderboard, rank));
+        }
+    }
+
+    /** Reads the names and times of the leaderboard from the index on disk.
+     *
+     * @param blackhole Keeps the read names and times.
+     */
+    @Benchmark
+    public void indexTop(Blackhole blackhole) {
+        for (int rank = 0; rank < LEADERBOARD_SIZE; rank++) {
+            blackhole.consume(Game.getIndexName(index, rank));
+            blackhole.consume(Game.getIndexTime(index, rank));
+        }
+    }
+
+    /** Adds a finished stage time of one of the players to the leaderboard in memory.
+     */
+    @Benchmark
+    public void addScore() {
+        Game.addScore(leaderboard, playerNames[random.nextInt(players)],
+            1000 + random.nextInt(600_000));
+    }
+
+    /** Adds the first finished stage times of NEW_PLAYERS new players to the leaderboard in
+     *  memory, which are inserted between the best times of the other players. Each iteration
+     *  runs this once on a freshly filled leaderboard, so the number of players stays about the
+     *  same while it is measured (the time is per added player).
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OperationsPerInvocation(NEW_PLAYERS)
+    @Warmup(iterations = 20)
+    @Measurement(iterations = 20)
+    public void addNewPlayer() {
+        for (int k = 0; k < NEW_PLAYERS; k++) {
+            Game.addScore(leaderboard, newNames[k], 1000 + random.nextInt(600_000));
+        }
+    }
+}
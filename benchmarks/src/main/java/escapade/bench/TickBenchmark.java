@@ -0,0 +1,64 @@
+package escapade.bench;
+
+// All imports needed to measure how long it takes to move the monsters in a tick.
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures the monster moves of StageEngine.tick() on square stage maps from 15x15 up to
+ *  4000x4000, where a part of the cells are monsters (the monster density), in both tick modes.
+ *  The PARALLEL tick mode only moves the monsters in parallel from 16384 monsters, on the common
+ *  ForkJoinPool; add -jvmArgsAppend -Djava.util.concurrent.ForkJoinPool.common.parallelism=1
+ *  (or another number of threads) to see how the time scales with the number of cores.
+ *  The monsters are moved directly (StageEngine.moveMonsters), since a tick also ends
+ *  the stage once a monster reaches the player, after which later ticks don't move anything.
+ *  The monsters keep moving around in the same stage map during the measurement, where the
+ *  stage map and the monster moves come from the same seed in every run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickBenchmark {
+
+    @Param({"15", "25", "40", "200", "1000", "2000", "4000"})
+    public int size; // Number of rows and columns.
+
+    @Param({"1", "5", "20"})
+    public int monsterPercent; // Percentage of the cells which are monsters.
+
+    @Param({"SERIAL", "PARALLEL"})
+    public String tickMode; // How the monsters are moved.
+
+    private Object engine; // The stage engine.
+
+    /** Creates the stage engine with walls and obstacles, and the monsters of the density.
+     */
+    @Setup
+    public void setUp() {
+        engine = Game.newEngine(size, monsterPercent, 5, 20, 75 - monsterPercent, "CORRIDOR",
+            tickMode, Game.SEED);
+    }
+
+    /** Moves every monster once.
+     *
+     * @param blackhole Keeps the number of monsters, so the tick isn't optimized away.
+     */
+    @Benchmark
+    public void tick(Blackhole blackhole) {
+        Game.moveMonsters(engine);
+        blackhole.consume(Game.getMonsterCount(engine));
+    }
+}
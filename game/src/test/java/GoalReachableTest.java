@@ -0,0 +1,77 @@
+// All imports needed to test that the goal can be reached.
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/** Tests that the goal can always be reached from the start of a generated stage map,
+ *  in both generation modes (see StageEngine.generateMap):
+ *  - CORRIDOR is always done in one try.
+ *  - RANDOM tries again, and clears a path in the last try when every try was a dead end.
+ */
+class GoalReachableTest {
+
+    private static final int SEEDS = 200; // Seeds of the generated stage maps.
+
+    private static final int MAX_TRIES = 20; // Tries of RANDOM before a path is cleared.
+
+    /** Creates a stage with the stage map of the hardest difficulty.
+     *
+     * @param mode How the stage map is generated.
+     * @param seed The seed of the stage.
+     * @return The stage engine.
+     */
+    private static StageEngine newHardStage(StageEngine.GenerationMode mode, long seed) {
+        StageConfig hard = StageConfig.forDifficulty(StageEngine.Difficulty.HARD);
+        return new StageEngine(new StageConfig(StageEngine.Difficulty.HARD, hard.getRowSize(),
+            hard.getColSize(), hard.getSampler(), mode), seed);
+    }
+
+    /** Creates a stage where two of three cells are walls, so a filled stage map is
+     *  practically never open from the start to the goal.
+     *
+     * @param mode How the stage map is generated.
+     * @param seed The seed of the stage.
+     * @return The stage engine.
+     */
+    private static StageEngine newWalledStage(StageEngine.GenerationMode mode, long seed) {
+        return new StageEngine(new StageConfig(StageEngine.Difficulty.HARD, 20, 20,
+            new TileSampler(0, 0, 2, 1), mode), seed);
+    }
+
+    @Test
+    void corridorIsDoneInOneTry() {
+        for (long seed = 0; seed < SEEDS; seed++) {
+            StageEngine hard = newHardStage(StageEngine.GenerationMode.CORRIDOR, seed);
+            assertEquals(1, hard.getGenerationTries());
+            assertTrue(hard.isGoalReachable(), "Seed " + seed);
+
+            StageEngine walled = newWalledStage(StageEngine.GenerationMode.CORRIDOR, seed);
+            assertEquals(1, walled.getGenerationTries());
+            assertTrue(walled.isGoalReachable(), "Seed " + seed);
+        }
+    }
+
+    @Test
+    void randomTriesAgainUntilTheGoalCanBeReached() {
+        int triedAgain = 0; // Stage maps which needed more than one try.
+        for (long seed = 0; seed < SEEDS; seed++) {
+            StageEngine engine = newHardStage(StageEngine.GenerationMode.RANDOM, seed);
+            assertTrue(engine.getGenerationTries() <= MAX_TRIES);
+            assertTrue(engine.isGoalReachable(), "Seed " + seed);
+            if (engine.getGenerationTries() > 1) {
+                triedAgain++;
+            }
+        }
+        assertTrue(triedAgain > 0); // Otherwise the seeds don't test trying again.
+    }
+
+    @Test
+    void randomClearsAPathAfterTheLastTry() {
+        for (long seed = 0; seed < SEEDS; seed++) {
+            StageEngine engine = newWalledStage(StageEngine.GenerationMode.RANDOM, seed);
+            assertEquals(MAX_TRIES, engine.getGenerationTries());
+            assertTrue(engine.isGoalReachable(), "Seed " + seed);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+// All imports needed to test the queue of pressed keys.
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+/** Tests that repeated keys are coalesced and that a full queue keeps the latest key
+ *  (see InputQueue), where the keys are offered on one thread (like the Event Dispatch
+ *  Thread) and taken on another thread (like the simulation thread of the game loop).
+ */
+class InputQueueTest {
+
+    private static final StageEngine.Move UP = StageEngine.Move.UP;
+    private static final StageEngine.Move DOWN = StageEngine.Move.DOWN;
+    private static final StageEngine.Move LEFT = StageEngine.Move.LEFT;
+
+    private final InputQueue queue = new InputQueue();
+
+    /** Starts an action on its own thread, where a failed check of the action
+     *  is thrown again by get.
+     *
+     * @param action The action.
+     * @return The task of the action, to wait until it is done.
+     */
+    private static FutureTask<Void> startThread(Runnable action) {
+        FutureTask<Void> task = new FutureTask<>(action, null);
+        new Thread(task).start();
+        return task;
+    }
+
+    /** Runs an action on its own thread and waits until it is done.
+     *
+     * @param action The action.
+     * @throws Exception If the action failed, or the test is interrupted while waiting.
+     */
+    private static void runOnThread(Runnable action) throws Exception {
+        startThread(action).get();
+    }
+
+    /** Takes every queued move.
+     *
+     * @return The moves, in the order they were taken.
+     */
+    private List<StageEngine.Move> drain() {
+        List<StageEngine.Move> moves = new ArrayList<>();
+        for (StageEngine.Move move = queue.poll(); move != null; move = queue.poll()) {
+            moves.add(move);
+        }
+        return moves;
+    }
+
+    @Test
+    void repeatedKeyIsCoalesced() throws Exception {
+        runOnThread(() -> {
+            queue.offer(UP);
+            queue.offer(UP);
+            queue.offer(UP);
+            queue.offer(LEFT);
+            queue.offer(LEFT);
+            queue.offer(UP);
+        });
+
+        List<List<StageEngine.Move>> taken = new ArrayList<>();
+        runOnThread(() -> taken.add(drain()));
+        assertEquals(List.of(UP, LEFT, UP), taken.get(0));
+        assertEquals(3, queue.getCoalesced());
+        assertEquals(3, queue.getMaxDepth());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void keyAfterTakenMoveIsQueuedAgain() throws Exception {
+        runOnThread(() -> queue.offer(UP));
+        runOnThread(() -> assertEquals(UP, queue.poll()));
+        runOnThread(() -> queue.offer(UP)); // Not coalesced, since the first move was done.
+        assertEquals(1, queue.size());
+        assertEquals(0, queue.getCoalesced());
+    }
+
+    @Test
+    void fullQueueReplacesTheLastMove() throws Exception {
+        runOnThread(() -> {
+            for (int k = 0; k < InputQueue.CAPACITY; k++) {
+                queue.offer(k % 2 == 0 ? UP : DOWN);
+            }
+            queue.offer(LEFT); // The queue is full, so LEFT replaces the last DOWN.
+            queue.offer(LEFT); // Coalesced into LEFT, so nothing is replaced.
+        });
+        assertEquals(InputQueue.CAPACITY, queue.size());
+        assertEquals(1, queue.getReplaced());
+        assertEquals(1, queue.getCoalesced());
+
+        List<List<StageEngine.Move>> taken = new ArrayList<>();
+        runOnThread(() -> taken.add(drain()));
+        List<StageEngine.Move> moves = taken.get(0);
+        assertEquals(InputQueue.CAPACITY, moves.size());
+        for (int k = 0; k < InputQueue.CAPACITY - 1; k++) {
+            assertEquals(k % 2 == 0 ? UP : DOWN, moves.get(k));
+        }
+        assertEquals(LEFT, moves.get(InputQueue.CAPACITY - 1)); // The latest key is done.
+    }
+
+    @Test
+    void everyOfferedMoveIsCountedWhileBothThreadsRun() throws Exception {
+        int offers = 200_000;
+        StageEngine.Move[] moves = StageEngine.Move.values();
+        AtomicBoolean offering = new AtomicBoolean(true);
+        List<StageEngine.Move> taken = new ArrayList<>();
+        StageEngine.Move[] last = new StageEngine.Move[1];
+
+        // The keys are pressed on one thread, with many repeated keys.
+        FutureTask<Void> keys = startThread(() -> {
+            SplittableRandom random = new SplittableRandom(5);
+            StageEngine.Move move = UP;
+            for (int k = 0; k < offers; k++) {
+                if (random.nextInt(4) == 0) {
+                    move = moves[random.nextInt(moves.length)];
+                }
+                queue.offer(move);
+            }
+            last[0] = move;
+            offering.set(false);
+        });
+
+        // The moves are taken on another thread, until every key is pressed and done.
+        FutureTask<Void> steps = startThread(() -> {
+            while (true) {
+                boolean done = !offering.get();
+                StageEngine.Move move = queue.poll();
+                if (move != null) {
+                    taken.add(move);
+                    assertTrue(queue.size() <= InputQueue.CAPACITY);
+                } else if (done) {
+                    return;
+                }
+            }
+        });
+        keys.get();
+        steps.get();
+
+        // Every offered move was taken, coalesced or replaced by a later move.
+        assertEquals(offers, taken.size() + queue.getCoalesced() + queue.getReplaced());
+        assertEquals(last[0], taken.get(taken.size() - 1));
+        assertTrue(queue.getMaxDepth() <= InputQueue.CAPACITY);
+        assertEquals(0, queue.size());
+    }
+}
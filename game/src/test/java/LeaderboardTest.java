@@ -0,0 +1,142 @@
+// All imports needed to test the leaderboard.
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/** Tests the lowest times and the ranks of the players in a leaderboard (see Leaderboard),
+ *  by comparing them with every finished stage time sorted at once.
+ */
+class LeaderboardTest {
+
+    private static final int SIZE = 5; // Number of lowest times kept.
+
+    private static final int PLAYERS = 200; // Number of different player names.
+
+    private static final int SCORES = 5000; // Finished stage times added.
+
+    private final List<String> names = new ArrayList<>(); // Player name of each added time.
+
+    private final List<Integer> times = new ArrayList<>(); // Every added time, in order.
+
+    private final Map<String, Integer> bestTimes = new HashMap<>(); // Best time of each player.
+
+    /** Adds random finished stage times to a leaderboard and remembers them.
+     *
+     * @param leaderboard The leaderboard.
+     * @param count The number of finished stage times.
+     * @param seed The seed of the random times.
+     */
+    private void addScores(Leaderboard leaderboard, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int k = 0; k < count; k++) {
+            String playerName = "Player" + random.nextInt(PLAYERS);
+            int time = 1000 + random.nextInt(50_000); // Often equal times.
+            leaderboard.add(playerName, time);
+            names.add(playerName);
+            times.add(time);
+            bestTimes.merge(playerName, time, Math::min);
+        }
+    }
+
+    /** Checks that the lowest times of a leaderboard are the lowest of all added times,
+     *  where equal times are in the order they were added.
+     *
+     * @param leaderboard The leaderboard.
+     */
+    private void assertLowestTimes(Leaderboard leaderboard) {
+        Integer[] order = new Integer[times.size()];
+        for (int k = 0; k < order.length; k++) {
+            order[k] = k;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(times.get(a), times.get(b))); // Stable.
+
+        assertEquals(Math.min(SIZE, order.length), leaderboard.size());
+        for (int rank = 0; rank < leaderboard.size(); rank++) {
+            assertEquals(times.get(order[rank]), leaderboard.getTime(rank));
+            assertEquals(names.get(order[rank]), leaderboard.getName(rank));
+        }
+    }
+
+    /** Checks that the rank of every player is one more than the number of players with
+     *  a lower best time.
+     *
+     * @param leaderboard The leaderboard.
+     */
+    private void assertRanks(Leaderboard leaderboard) {
+        assertEquals(bestTimes.size(), leaderboard.getPlayerCount());
+        for (Map.Entry<String, Integer> player : bestTimes.entrySet()) {
+            int faster = 0;
+            for (int best : bestTimes.values()) {
+                if (best < player.getValue()) {
+                    faster++;
+                }
+            }
+            assertEquals(faster + 1, leaderboard.rankOf(player.getKey()));
+            assertEquals(player.getValue(), leaderboard.getBestTime(player.getKey()));
+        }
+    }
+
+    @Test
+    void lowestTimesAndRanksAreTheSameAsSortingEveryTime() {
+        Leaderboard leaderboard = new Leaderboard(SIZE);
+        assertEquals(0, leaderboard.size());
+        assertEquals(-1, leaderboard.rankOf("Nobody"));
+
+        // The lowest times and ranks are also checked while the leaderboard is filled.
+        for (int part = 0; part < 10; part++) {
+            addScores(leaderboard, SCORES / 10, part);
+            assertLowestTimes(leaderboard);
+            assertRanks(leaderboard);
+        }
+        assertEquals(SCORES, leaderboard.getPlayCount());
+    }
+
+    @Test
+    void historyHasEveryTimeOfThisSession() {
+        Leaderboard leaderboard = new Leaderboard(SIZE);
+        addScores(leaderboard, SCORES, 1);
+        for (String playerName : bestTimes.keySet()) {
+            List<Integer> history = new ArrayList<>();
+            for (int k = 0; k < names.size(); k++) {
+                if (names.get(k).equals(playerName)) {
+                    history.add(times.get(k));
+                }
+            }
+            int[] expected = history.stream().mapToInt(Integer::intValue).toArray();
+            assertArrayEquals(expected, leaderboard.getHistory(playerName));
+            assertEquals(expected.length, leaderboard.getPlayCount(playerName));
+        }
+        assertArrayEquals(new int[0], leaderboard.getHistory("Nobody"));
+    }
+
+    @Test
+    void restoredLeaderboardKeepsLowestTimesAndRanks() {
+        Leaderboard leaderboard = new Leaderboard(SIZE);
+        addScores(leaderboard, SCORES, 2);
+        ByteBuffer snapshot = ByteBuffer.allocate(leaderboard.snapshotSize());
+        leaderboard.writeSnapshot(snapshot);
+        snapshot.flip();
+
+        Leaderboard restored = new Leaderboard(SIZE);
+        restored.readSnapshot(snapshot);
+        assertLowestTimes(restored);
+        assertRanks(restored);
+        assertEquals(SCORES, restored.getPlayCount());
+
+        // Only the times after the snapshot are in the history, but every play is counted.
+        String playerName = names.get(0);
+        int plays = leaderboard.getPlayCount(playerName);
+        restored.add(playerName, 999);
+        assertArrayEquals(new int[] {999}, restored.getHistory(playerName));
+        assertEquals(plays + 1, restored.getPlayCount(playerName));
+        assertEquals(1, restored.rankOf(playerName));
+    }
+}
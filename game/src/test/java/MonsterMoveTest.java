@@ -0,0 +1,126 @@
+// All imports needed to test the moves of the monsters.
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/** Tests that every monster moves at most once in a tick, and never into the goal or into
+ *  the cell of another monster (see StageEngine.moveMonsters), on small stage maps where
+ *  the seeds make every run the same.
+ */
+class MonsterMoveTest {
+
+    private static final int TICKS = 50; // Ticks in which the monsters move.
+
+    /** Creates a stage map without walls and obstacles.
+     *
+     * @param rowSize Number of rows.
+     * @param colSize Number of columns.
+     * @param monsterShare Share of the cells with a monster, the other cells are empty.
+     * @param seed The seed of the stage.
+     * @return The stage engine.
+     */
+    private static StageEngine newStage(int rowSize, int colSize, double monsterShare, long seed) {
+        TileSampler sampler = new TileSampler(monsterShare, 0, 0, 1 - monsterShare);
+        return new StageEngine(new StageConfig(StageEngine.Difficulty.EASY, rowSize, colSize,
+            sampler, StageEngine.GenerationMode.RANDOM), seed);
+    }
+
+    /** Checks that the monster array and the monsters in the stage map are the same,
+     *  with every monster in its own cell and the goal still in the bottom right corner.
+     *
+     * @param engine The stage engine.
+     */
+    private static void assertMonstersInTheirOwnCells(StageEngine engine) {
+        byte[] cells = TestStages.cells(engine);
+        int[] monsters = TestStages.monsters(engine);
+        Set<Integer> occupied = new HashSet<>();
+        for (int cell : monsters) {
+            assertEquals(StageEngine.MONSTER, cells[cell]);
+            assertTrue(occupied.add(cell), "Two monsters in cell " + cell);
+        }
+        int monsterCells = 0;
+        for (byte tile : cells) {
+            if (tile == StageEngine.MONSTER) {
+                monsterCells++;
+            }
+        }
+        assertEquals(monsters.length, monsterCells);
+        assertEquals(StageEngine.GOAL, cells[cells.length - 1]);
+    }
+
+    @Test
+    void everyMonsterMovesAtMostOneCellInATick() {
+        for (long seed = 0; seed < 20; seed++) {
+            StageEngine engine = newStage(30, 30, 0.5, seed);
+            int colSize = engine.getColSize();
+            for (int tick = 0; tick < TICKS; tick++) {
+                int[] before = TestStages.monsters(engine);
+                engine.moveMonsters();
+                int[] after = TestStages.monsters(engine);
+
+                assertEquals(before.length, after.length);
+                for (int k = 0; k < before.length; k++) {
+                    int rows = Math.abs(after[k] / colSize - before[k] / colSize);
+                    int cols = Math.abs(after[k] % colSize - before[k] % colSize);
+                    assertTrue(rows + cols <= 1, "Monster " + k + " moved more than one cell");
+                }
+                assertMonstersInTheirOwnCells(engine);
+            }
+        }
+    }
+
+    @Test
+    void monsterInARowMovesOnlyOnce() {
+        // Monsters in a row used to move right again when the scan reached their new cell.
+        for (long seed = 0; seed < 50; seed++) {
+            StageEngine engine = newStage(1, 40, 0.3, seed);
+            int[] before = TestStages.monsters(engine);
+            engine.moveMonsters();
+            int[] after = TestStages.monsters(engine);
+            for (int k = 0; k < before.length; k++) {
+                assertTrue(Math.abs(after[k] - before[k]) <= 1);
+            }
+        }
+    }
+
+    @Test
+    void monsterNeverMovesIntoTheGoal() {
+        // The stage map is the start, a monster and the goal.
+        for (long seed = 0; seed < 20; seed++) {
+            StageEngine engine = newStage(1, 3, 1, seed);
+            assertEquals(1, engine.getMonsterCount());
+            for (int tick = 0; tick < TICKS; tick++) {
+                engine.moveMonsters();
+                assertNotEquals(2, engine.getMonsterCell(0));
+                assertMonstersInTheirOwnCells(engine);
+            }
+        }
+    }
+
+    @Test
+    void monsterNeverMovesIntoAnotherMonster() {
+        // The stage map is the start, two monsters and the goal, so the monsters block each other.
+        for (long seed = 0; seed < 20; seed++) {
+            StageEngine engine = newStage(1, 4, 1, seed);
+            assertEquals(2, engine.getMonsterCount());
+            for (int tick = 0; tick < TICKS; tick++) {
+                engine.moveMonsters();
+                assertMonstersInTheirOwnCells(engine);
+            }
+        }
+
+        // A map full of monsters, where only the monsters next to the start can move.
+        for (long seed = 0; seed < 20; seed++) {
+            StageEngine engine = newStage(3, 3, 1, seed);
+            assertEquals(7, engine.getMonsterCount());
+            for (int tick = 0; tick < TICKS; tick++) {
+                engine.moveMonsters();
+                assertMonstersInTheirOwnCells(engine);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+// All imports needed to test the replay files.
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests that a recorded stage is played again in the same way (see ReplayRecorder and Replay),
+ *  and that a damaged replay file is reported instead of crashing the replay.
+ */
+class ReplayTest {
+
+    private static final long SEED = 20241018L; // The seed of the recorded stage.
+
+    private static final long STEP_NANOS = 8_333_000; // A step of the game loop (whole micros).
+
+    @TempDir
+    Path folder; // The folder of the replay files.
+
+    /** Records a stage like the game loop does, with random moves of the player and the
+     *  monsters, until the stage is over or a number of steps has been done.
+     *
+     * @param steps The most steps to record.
+     * @return The recorded stage engine, after the last step.
+     * @throws IOException If the replay file can't be written.
+     */
+    private StageEngine record(int steps) throws IOException {
+        long[] now = {0};
+        StageConfig config = StageConfig.forDifficulty(StageEngine.Difficulty.MEDIUM);
+        StageEngine engine = new StageEngine(config, SEED, () -> now[0]);
+        SplittableRandom random = new SplittableRandom(7);
+        StageEngine.Move[] moves = StageEngine.Move.values();
+        try (ReplayRecorder recorder = new ReplayRecorder(folder, engine, "Tester", true)) {
+            for (int k = 0; k < steps && !engine.isFinished(); k++) {
+                now[0] += STEP_NANOS;
+                StageEngine.Move move = random.nextInt(3) == 0
+                    ? moves[random.nextInt(moves.length)] : null;
+                boolean monstersMove = k % 30 == 0;
+                engine.step(move, monstersMove);
+                if (move != null || monstersMove) {
+                    recorder.record(engine.getElapsedNanos(), move, monstersMove);
+                }
+            }
+        }
+        return engine;
+    }
+
+    /** Returns the only replay file in the folder.
+     *
+     * @return The replay file.
+     * @throws IOException If the folder can't be read.
+     */
+    private Path replayFile() throws IOException {
+        try (var files = Files.list(folder)) {
+            return files.filter(file -> file.toString().endsWith(".replay")).findFirst()
+                .orElseThrow();
+        }
+    }
+
+    @Test
+    void replayEndsInTheRecordedState() throws IOException {
+        StageEngine recorded = record(3000);
+        Replay replay = Replay.read(replayFile());
+
+        assertEquals(StageEngine.Difficulty.MEDIUM, replay.getDifficulty());
+        assertTrue(replay.isRealTime());
+        assertEquals(SEED, replay.getSeed());
+        assertEquals("Tester", replay.getPlayerName());
+
+        StageEngine replayed = replay.play();
+        assertEquals(recorded.isFinished(), replayed.isFinished());
+        assertEquals(recorded.getPlayer().isDead(), replayed.getPlayer().isDead());
+        assertEquals(recorded.getFinishTime(), replayed.getFinishTime());
+        assertEquals(recorded.getPlayer().getPlayerX(), replayed.getPlayer().getPlayerX());
+        assertEquals(recorded.getPlayer().getPlayerY(), replayed.getPlayer().getPlayerY());
+        assertArrayEquals(TestStages.cells(recorded), TestStages.cells(replayed));
+        assertArrayEquals(TestStages.monsters(recorded), TestStages.monsters(replayed));
+    }
+
+    @Test
+    void partlyWrittenLastEventIsLeftOut() throws IOException {
+        record(200);
+        Path file = replayFile();
+        int events = Replay.read(file).getEventCount();
+
+        // A move with a time of which only the first varint byte was written.
+        Files.write(file, new byte[] {1, (byte) 0x81}, StandardOpenOption.APPEND);
+        assertEquals(events, Replay.read(file).getEventCount());
+    }
+
+    @Test
+    void unknownMoveIsReportedAsCorrupt() throws IOException {
+        record(200);
+        Path file = replayFile();
+        Files.write(file, new byte[] {(byte) 0x81, 1}, StandardOpenOption.APPEND);
+        IOException e = assertThrows(IOException.class, () -> Replay.read(file));
+        assertTrue(e.getMessage().startsWith("Corrupt replay"));
+    }
+
+    @Test
+    void otherFileIsNotAReplay() throws IOException {
+        Path file = folder.resolve("other.replay");
+        Files.write(file, new byte[32]);
+        assertThrows(IOException.class, () -> Replay.read(file));
+    }
+}
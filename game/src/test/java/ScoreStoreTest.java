@@ -0,0 +1,234 @@
+// All imports needed to test the score files.
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests that the finished stage times in the score files are the same after the game starts
+ *  again (see ScoreStore and ScoreIndex), also when the snapshot or the index files are
+ *  missing or damaged, or the last record was only partly written.
+ */
+class ScoreStoreTest {
+
+    private static final int LEADERBOARD_SIZE = 5; // Number of finish times per leaderboard.
+
+    private static final int SCORES = 3000; // Finished stage times added one by one.
+
+    @TempDir
+    Path folder; // The folder of the score files.
+
+    /** Returns empty leaderboards indexed by the order of the difficulties.
+     *
+     * @return The leaderboards.
+     */
+    private static Leaderboard[] newLeaderboards() {
+        Leaderboard[] leaderboards = new Leaderboard[StageEngine.Difficulty.values().length];
+        for (int d = 0; d < leaderboards.length; d++) {
+            leaderboards[d] = new Leaderboard(LEADERBOARD_SIZE);
+        }
+        return leaderboards;
+    }
+
+    /** Adds random finished stage times like the game does, one by one, so the snapshot
+     *  is written and the index files are merged a few times.
+     *
+     * @param store The score store.
+     * @param leaderboards The leaderboards of the score store.
+     * @param count The number of finished stage times.
+     * @throws IOException If the score files can't be written.
+     */
+    private static void addScores(ScoreStore store, Leaderboard[] leaderboards, int count)
+        throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        StageEngine.Difficulty[] difficulties = StageEngine.Difficulty.values();
+        for (int k = 0; k < count; k++) {
+            // Most times are on the easy stage, so its index file is merged.
+            StageEngine.Difficulty difficulty = random.nextInt(4) == 0
+                ? difficulties[random.nextInt(difficulties.length)] : StageEngine.Difficulty.EASY;
+            String playerName = "Player" + random.nextInt(50);
+            int time = 1000 + random.nextInt(600_000);
+            leaderboards[difficulty.ordinal()].add(playerName, time);
+            store.append(difficulty, playerName, time);
+        }
+    }
+
+    /** Lists the finished stage times of leaderboards, in the order of their ranks.
+     *
+     * @param leaderboards The leaderboards.
+     * @return A line for each rank, with the difficulty, the time and the player name.
+     */
+    private static List<String> listScores(Leaderboard[] leaderboards) {
+        List<String> scores = new ArrayList<>();
+        for (int d = 0; d < leaderboards.length; d++) {
+            scores.add(d + " played " + leaderboards[d].getPlayCount());
+            for (int rank = 0; rank < leaderboards[d].size(); rank++) {
+                scores.add(d + " " + leaderboards[d].getTime(rank) + " "
+                    + leaderboards[d].getName(rank));
+            }
+        }
+        return scores;
+    }
+
+    /** Lists the finished stage times of leaderboards and of the index files of a score store,
+     *  in the order of their ranks. The score store must still be open.
+     *
+     * @param leaderboards The leaderboards of the score store.
+     * @param store The score store.
+     * @return A line for each rank, with the difficulty, the time and the player name.
+     */
+    private static List<String> listScores(Leaderboard[] leaderboards, ScoreStore store) {
+        List<String> scores = listScores(leaderboards);
+        scores.add("records " + store.getRecordCount());
+        for (StageEngine.Difficulty difficulty : StageEngine.Difficulty.values()) {
+            ScoreIndex index = store.getIndex(difficulty);
+            for (long rank = 0; rank < index.size(); rank++) {
+                scores.add(difficulty + " " + index.getTime(rank) + " " + index.getName(rank));
+            }
+        }
+        return scores;
+    }
+
+    @Test
+    void scoresAreTheSameAfterReopening() throws IOException {
+        Leaderboard[] leaderboards = newLeaderboards();
+        List<String> expected;
+        try (ScoreStore store = new ScoreStore(folder, leaderboards)) {
+            addScores(store, leaderboards, SCORES);
+            expected = listScores(leaderboards, store);
+        }
+
+        Leaderboard[] reopened = newLeaderboards();
+        try (ScoreStore store = new ScoreStore(folder, reopened)) {
+            assertEquals(SCORES, store.getRecordCount());
+            assertEquals(expected, listScores(reopened, store));
+        }
+    }
+
+    @Test
+    void missingSnapshotAndIndexFilesAreBuiltAgain() throws IOException {
+        Leaderboard[] leaderboards = newLeaderboards();
+        List<String> expected;
+        try (ScoreStore store = new ScoreStore(folder, leaderboards)) {
+            addScores(store, leaderboards, SCORES);
+            expected = listScores(leaderboards, store);
+        }
+        try (var files = Files.list(folder)) {
+            for (Path file : files.toList()) {
+                if (!file.getFileName().toString().equals("scores.log")) {
+                    Files.delete(file);
+                }
+            }
+        }
+
+        // The files are built again from the score log, and then used when the game starts again.
+        for (int open = 0; open < 2; open++) {
+            Leaderboard[] reopened = newLeaderboards();
+            try (ScoreStore store = new ScoreStore(folder, reopened)) {
+                assertEquals(expected, listScores(reopened, store));
+            }
+        }
+    }
+
+    @Test
+    void unfinishedIndexMergeIsIgnored() throws IOException {
+        Leaderboard[] leaderboards = newLeaderboards();
+        List<String> expected;
+        try (ScoreStore store = new ScoreStore(folder, leaderboards)) {
+            addScores(store, leaderboards, SCORES);
+            expected = listScores(leaderboards, store);
+        }
+
+        // The game stopped while a merge was writing the next generation of the index file.
+        Path unfinished = folder.resolve("scores-easy.index.999.new");
+        Files.write(unfinished, new byte[1000]);
+
+        Leaderboard[] reopened = newLeaderboards();
+        try (ScoreStore store = new ScoreStore(folder, reopened)) {
+            assertEquals(expected, listScores(reopened, store));
+        }
+        assertFalse(Files.exists(unfinished));
+    }
+
+    @Test
+    void addingAllAtOnceIsTheSameAsOneByOne() throws IOException {
+        String[] names = new String[SCORES];
+        int[] times = new int[SCORES];
+        SplittableRandom random = new SplittableRandom(7);
+        for (int k = 0; k < SCORES; k++) {
+            names[k] = "Player" + random.nextInt(50);
+            times[k] = 1000 + random.nextInt(600_000);
+        }
+
+        // Both score stores already have some scores, so the added records don't start at 0.
+        Path oneByOneFolder = folder.resolve("one");
+        Path allAtOnceFolder = folder.resolve("all");
+        Leaderboard[] oneByOne = newLeaderboards();
+        Leaderboard[] allAtOnce = newLeaderboards();
+        int hard = StageEngine.Difficulty.HARD.ordinal();
+        try (ScoreStore first = new ScoreStore(oneByOneFolder, oneByOne);
+            ScoreStore second = new ScoreStore(allAtOnceFolder, allAtOnce)) {
+            addScores(first, oneByOne, 150);
+            addScores(second, allAtOnce, 150);
+            for (int k = 0; k < SCORES; k++) {
+                oneByOne[hard].add(names[k], times[k]);
+                first.append(StageEngine.Difficulty.HARD, names[k], times[k]);
+                allAtOnce[hard].add(names[k], times[k]);
+            }
+            second.appendAll(StageEngine.Difficulty.HARD, names, times);
+            assertEquals(listScores(oneByOne, first), listScores(allAtOnce, second));
+        }
+
+        // The score files are also the same when the game starts again.
+        Leaderboard[] oneByOneReopened = newLeaderboards();
+        Leaderboard[] allAtOnceReopened = newLeaderboards();
+        try (ScoreStore first = new ScoreStore(oneByOneFolder, oneByOneReopened);
+            ScoreStore second = new ScoreStore(allAtOnceFolder, allAtOnceReopened)) {
+            assertEquals(150 + SCORES, second.getRecordCount());
+            assertEquals(listScores(oneByOneReopened, first),
+                listScores(allAtOnceReopened, second));
+            assertEquals(listScores(oneByOne), listScores(allAtOnceReopened));
+        }
+    }
+
+    @Test
+    void damagedSnapshotIsNotUsed() throws IOException {
+        Leaderboard[] leaderboards = newLeaderboards();
+        try (ScoreStore store = new ScoreStore(folder, leaderboards)) {
+            addScores(store, leaderboards, SCORES);
+            store.compact();
+        }
+
+        // Change a byte of the checksum at the end of the snapshot.
+        Path snapshot = folder.resolve("scores.snapshot");
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(snapshot, bytes);
+
+        Leaderboard[] reopened = newLeaderboards();
+        new ScoreStore(folder, reopened).close();
+        assertEquals(listScores(leaderboards), listScores(reopened));
+    }
+
+    @Test
+    void partlyWrittenRecordIsRemoved() throws IOException {
+        Leaderboard[] leaderboards = newLeaderboards();
+        try (ScoreStore store = new ScoreStore(folder, leaderboards)) {
+            addScores(store, leaderboards, 10);
+        }
+        Files.write(folder.resolve("scores.log"), new byte[ScoreStore.RECORD_SIZE / 2],
+            StandardOpenOption.APPEND);
+
+        try (ScoreStore store = new ScoreStore(folder, newLeaderboards())) {
+            assertEquals(10, store.getRecordCount());
+        }
+        assertEquals(ScoreStore.RECORD_SIZE * 11, Files.size(folder.resolve("scores.log")));
+    }
+}
@@ -0,0 +1,161 @@
+// All imports needed to test the hand-over of the snapshots.
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/** Tests that the game stage gets the stage as it was published by the thread which runs
+ *  the stage engine (see SnapshotExchange), where both run on the test thread in turns:
+ *  - A step moves the monsters (or generates a new stage map) and then publishes.
+ *  - A take is what the game stage does every frame.
+ *  The test keeps a copy of the stage for every snapshot that should be published, so the
+ *  taken snapshots can be compared with the stage at the time they were published.
+ */
+class SnapshotExchangeTest {
+
+    private static final long SEED = 99L; // The seed of the stage.
+
+    private static final int STEPS = 600; // Steps in the longer tests.
+
+    private final StageEngine engine = new StageEngine(
+        StageConfig.forDifficulty(StageEngine.Difficulty.HARD), SEED);
+
+    private final SnapshotExchange exchange = new SnapshotExchange(engine);
+
+    private final Map<Long, byte[]> publishedCells = new HashMap<>(); // Cells per snapshot.
+
+    private final Map<Long, int[]> publishedMonsters = new HashMap<>(); // Monsters per snapshot.
+
+    private long sequence; // Number of the last snapshot that should be published.
+
+    private boolean taken = true; // Whether the last published snapshot was taken.
+
+    private boolean changed; // Whether the stage changed since the last published snapshot.
+
+    /** Does a step of the stage: the monsters move, or a new stage map is generated,
+     *  and then the changes are published if the last published snapshot was taken.
+     *
+     * @param newMap Whether a new stage map is generated instead of moving the monsters.
+     */
+    private void step(boolean newMap) {
+        if (newMap) {
+            engine.generateMap(SEED + sequence);
+            changed = true;
+        } else {
+            int[] before = TestStages.monsters(engine);
+            engine.moveMonsters();
+            changed |= !Arrays.equals(before, TestStages.monsters(engine));
+        }
+
+        exchange.publish();
+        if (changed && taken) {
+            // The exchange had a free snapshot, so these changes are published now.
+            sequence++;
+            publishedCells.put(sequence, TestStages.cells(engine));
+            publishedMonsters.put(sequence, TestStages.monsters(engine));
+            changed = false;
+            taken = false;
+        }
+    }
+
+    /** Takes the newest published snapshot, like the game stage does every frame,
+     *  and checks that it is the stage as it was published.
+     *
+     * @return The taken snapshot, or null if no snapshot was published since the last take.
+     */
+    private StageSnapshot take() {
+        StageSnapshot snapshot = exchange.take();
+        if (snapshot != null) {
+            taken = true;
+            assertEquals(sequence, snapshot.getSequence()); // Always the newest snapshot.
+            assertArrayEquals(publishedCells.get(sequence), cells(snapshot));
+            int[] monsters = new int[snapshot.getMonsterCount()];
+            for (int k = 0; k < monsters.length; k++) {
+                monsters[k] = snapshot.getMonster(k);
+            }
+            assertArrayEquals(publishedMonsters.get(sequence), monsters);
+        }
+        return snapshot;
+    }
+
+    /** Returns the cells of a snapshot.
+     *
+     * @param snapshot The snapshot.
+     * @return The game element of each cell.
+     */
+    private byte[] cells(StageSnapshot snapshot) {
+        byte[] cells = new byte[engine.getGrid().size()];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = snapshot.get(cell);
+        }
+        return cells;
+    }
+
+    @Test
+    void newestPublishedSnapshotIsTaken() {
+        assertNull(exchange.take()); // Nothing was published yet.
+
+        step(false);
+        assertNotNull(take());
+        assertNull(take()); // The snapshot is only taken once.
+
+        // The snapshot of the first step waits, and the next steps are published together later.
+        step(false);
+        step(false);
+        step(false);
+        assertEquals(2, take().getSequence());
+        step(false);
+        StageSnapshot snapshot = take();
+        assertEquals(3, snapshot.getSequence());
+        assertArrayEquals(TestStages.cells(engine), cells(snapshot));
+    }
+
+    @Test
+    void gameStageWhichMissedStepsCatchesUpWithTheChangedCells() {
+        // The game stage only redraws the cells which are listed as changed in a snapshot.
+        byte[] drawn = cells(exchange.getFront());
+        for (int k = 0; k < STEPS; k++) {
+            step(k % 150 == 149);
+
+            // The game stage takes a snapshot only after a few steps, like a slow frame.
+            if (k % 7 == 0 || k % 11 == 0) {
+                StageSnapshot snapshot = take();
+                if (snapshot != null) {
+                    if (snapshot.isAllChanged()) {
+                        drawn = cells(snapshot);
+                    }
+                    for (int c = 0; c < snapshot.getChangedCount(); c++) {
+                        int cell = snapshot.getChanged(c);
+                        drawn[cell] = snapshot.get(cell);
+                    }
+                    assertArrayEquals(cells(snapshot), drawn);
+                }
+            }
+        }
+    }
+
+    @Test
+    void threeSnapshotsAreReused() {
+        Set<StageSnapshot> snapshots = Collections.newSetFromMap(new IdentityHashMap<>());
+        snapshots.add(exchange.getFront());
+        for (int k = 0; k < STEPS; k++) {
+            step(k % 150 == 149);
+            if (k % 3 != 0) {
+                StageSnapshot snapshot = take();
+                if (snapshot != null) {
+                    snapshots.add(snapshot);
+                }
+            }
+            snapshots.add(exchange.getFront());
+        }
+        assertEquals(3, snapshots.size());
+    }
+}
@@ -0,0 +1,116 @@
+// All imports needed to test the stage engine.
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/** Tests that a seed always gives the same stage (see StageEngine), so a stage can be
+ *  played again from its seed and the moves of the player. This also holds for a large stage
+ *  map, which is filled in bands of rows on all cores, and for both tick modes.
+ */
+class StageEngineTest {
+
+    private static final long SEED = 1234L; // The seed of the stages.
+
+    private static final int TICKS = 40; // Ticks in which the monsters move.
+
+    private static final int LARGE_SIZE = 600; // Rows and columns of a map filled in parallel.
+
+    /** Creates a stage with the stage map of a difficulty.
+     *
+     * @param difficulty The stage difficulty.
+     * @param seed The seed of the random generator.
+     * @return The stage engine.
+     */
+    private static StageEngine newStage(StageEngine.Difficulty difficulty, long seed) {
+        return new StageEngine(StageConfig.forDifficulty(difficulty), seed);
+    }
+
+    /** Creates a large hard stage, of which the stage map is filled in parallel bands of rows
+     *  and which has enough monsters to move them in parallel.
+     *
+     * @param tickMode How the monsters are moved in a tick.
+     * @return The stage engine.
+     */
+    private static StageEngine newLargeStage(StageEngine.TickMode tickMode) {
+        return new StageEngine(new StageConfig(StageEngine.Difficulty.HARD, LARGE_SIZE, LARGE_SIZE,
+            TileSampler.forDifficulty(StageEngine.Difficulty.HARD),
+            StageEngine.GenerationMode.RANDOM, tickMode), SEED);
+    }
+
+    /** Moves the monsters of a stage in a number of ticks.
+     *
+     * @param engine The stage engine.
+     * @param ticks The number of ticks.
+     */
+    private static void moveMonsters(StageEngine engine, int ticks) {
+        for (int tick = 0; tick < ticks; tick++) {
+            engine.moveMonsters();
+        }
+    }
+
+    @Test
+    void seedGivesTheSameStage() {
+        for (StageEngine.Difficulty difficulty : StageEngine.Difficulty.values()) {
+            StageEngine first = newStage(difficulty, SEED);
+            StageEngine second = newStage(difficulty, SEED);
+            assertEquals(first.getGenerationTries(), second.getGenerationTries());
+            assertArrayEquals(TestStages.cells(first), TestStages.cells(second));
+            assertArrayEquals(TestStages.monsters(first), TestStages.monsters(second));
+
+            // The monsters keep moving with the random generator of the stage.
+            moveMonsters(first, TICKS);
+            moveMonsters(second, TICKS);
+            assertArrayEquals(TestStages.cells(first), TestStages.cells(second));
+            assertArrayEquals(TestStages.monsters(first), TestStages.monsters(second));
+        }
+    }
+
+    @Test
+    void newStageMapWithTheSeedStartsTheSameStage() {
+        StageEngine fresh = newStage(StageEngine.Difficulty.HARD, SEED);
+        StageEngine played = newStage(StageEngine.Difficulty.HARD, SEED + 1);
+        moveMonsters(played, TICKS);
+
+        played.generateMap(SEED);
+        assertEquals(SEED, played.getSeed());
+        moveMonsters(fresh, TICKS);
+        moveMonsters(played, TICKS);
+        assertArrayEquals(TestStages.cells(fresh), TestStages.cells(played));
+        assertArrayEquals(TestStages.monsters(fresh), TestStages.monsters(played));
+    }
+
+    @Test
+    void largeStageMapFilledInBandsOnlyDependsOnTheSeed() {
+        StageEngine first = newLargeStage(StageEngine.TickMode.SERIAL);
+        StageEngine second = newLargeStage(StageEngine.TickMode.SERIAL);
+        assertArrayEquals(TestStages.cells(first), TestStages.cells(second));
+        assertArrayEquals(TestStages.monsters(first), TestStages.monsters(second));
+    }
+
+    @Test
+    void monstersOfTheBandsAreIndexedInTheOrderOfTheCells() {
+        StageEngine engine = newLargeStage(StageEngine.TickMode.SERIAL);
+        byte[] cells = TestStages.cells(engine);
+        int[] monsters = TestStages.monsters(engine);
+
+        // Every monster cell is in the monster array once, from the first to the last cell.
+        int k = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] == StageEngine.MONSTER) {
+                assertEquals(cell, monsters[k++]);
+            }
+        }
+        assertEquals(monsters.length, k);
+    }
+
+    @Test
+    void parallelTickMovesMonstersLikeSerialTick() {
+        StageEngine serial = newLargeStage(StageEngine.TickMode.SERIAL);
+        StageEngine parallel = newLargeStage(StageEngine.TickMode.PARALLEL);
+        moveMonsters(serial, TICKS);
+        moveMonsters(parallel, TICKS);
+        assertArrayEquals(TestStages.cells(serial), TestStages.cells(parallel));
+        assertArrayEquals(TestStages.monsters(serial), TestStages.monsters(parallel));
+    }
+}
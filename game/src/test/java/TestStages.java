@@ -0,0 +1,36 @@
+/** Helpers which copy the state of a stage engine, so the tests can compare two stages
+ *  (for example a recorded stage and its replay) with assertArrayEquals.
+ */
+final class TestStages {
+
+    private TestStages() {
+        // Only the static helpers are used.
+    }
+
+    /** Returns the game elements of every cell of a stage map.
+     *
+     * @param engine The stage engine.
+     * @return The game element of each cell.
+     */
+    static byte[] cells(StageEngine engine) {
+        TileGrid grid = engine.getGrid();
+        byte[] cells = new byte[grid.size()];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = grid.get(cell);
+        }
+        return cells;
+    }
+
+    /** Returns the positions of the monsters of a stage, in the order of the monster array.
+     *
+     * @param engine The stage engine.
+     * @return The cell of each monster.
+     */
+    static int[] monsters(StageEngine engine) {
+        int[] monsters = new int[engine.getMonsterCount()];
+        for (int k = 0; k < monsters.length; k++) {
+            monsters[k] = engine.getMonsterCell(k);
+        }
+        return monsters;
+    }
+}